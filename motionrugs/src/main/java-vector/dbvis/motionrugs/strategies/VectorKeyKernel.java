@@ -0,0 +1,120 @@
+package dbvis.motionrugs.strategies;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Key kernel on the Vector API. Quantization and encoding run in the lanes of
+ * the preferred vector shape, the remaining points at the end of a frame are
+ * encoded with the scalar encoders.
+ *
+ * The Hilbert state machine of {@link HilbertKeys} is evaluated bit by bit
+ * with lane-wise masks instead of table lookups, walking the same number of
+ * bits so that the keys are identical. Loaded reflectively by
+ * {@link KeyKernels}, so this class must not be referenced from the main
+ * sources.
+ */
+final class VectorKeyKernel implements KeyKernel {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    private static final double MANTISSA_SHIFT = 0x1p52;
+    private static final long MANTISSA_MASK = (1L << 52) - 1;
+
+    VectorKeyKernel() {
+        if (DOUBLES.length() != LONGS.length()) {
+            throw new IllegalStateException("Double and long lanes differ: " + DOUBLES + ", " + LONGS);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector " + LONGS.length() + "x64";
+    }
+
+    @Override
+    public void hilbertKeys(double[] xs, double[] ys, int n, GridQuantizer quantizer, long[] keys) {
+        int bits = quantizer.getBits();
+        // HilbertKeys walks whole nibbles, leading zero bits change its state too
+        int steps = (bits + 3) / 4 * 4;
+        int bound = DOUBLES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            LongVector x = quantize(xs, i, quantizer.getMinX(), quantizer);
+            LongVector y = quantize(ys, i, quantizer.getMinY(), quantizer);
+            LongVector state = LongVector.zero(LONGS);
+            LongVector key = LongVector.zero(LONGS);
+            for (int b = steps - 1; b >= 0; b--) {
+                LongVector rx = x.lanewise(VectorOperators.LSHR, b).and(1L);
+                LongVector ry = y.lanewise(VectorOperators.LSHR, b).and(1L);
+                // swap the axes where bit 1 of the state is set, reflect where bit 0 is
+                LongVector swap = rx.lanewise(VectorOperators.XOR, ry)
+                        .and(state.lanewise(VectorOperators.LSHR, 1).and(1L));
+                LongVector flip = state.and(1L);
+                rx = rx.lanewise(VectorOperators.XOR, swap).lanewise(VectorOperators.XOR, flip);
+                ry = ry.lanewise(VectorOperators.XOR, swap).lanewise(VectorOperators.XOR, flip);
+                // digit (3 * rx) ^ ry
+                key = key.lanewise(VectorOperators.LSHL, 2)
+                        .or(rx.lanewise(VectorOperators.LSHL, 1))
+                        .or(rx.lanewise(VectorOperators.XOR, ry));
+                LongVector turn = ry.lanewise(VectorOperators.XOR, 1L);
+                state = state.lanewise(VectorOperators.XOR,
+                        turn.lanewise(VectorOperators.LSHL, 1).or(turn.and(rx)));
+            }
+            key.intoArray(keys, i);
+        }
+        for (; i < n; i++) {
+            keys[i] = HilbertKeys.encode(quantizer.quantizeX(xs[i]), quantizer.quantizeY(ys[i]), bits);
+        }
+    }
+
+    @Override
+    public void mortonKeys(double[] xs, double[] ys, int n, GridQuantizer quantizer, long[] keys) {
+        int bound = DOUBLES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            LongVector x = spread(quantize(xs, i, quantizer.getMinX(), quantizer));
+            LongVector y = spread(quantize(ys, i, quantizer.getMinY(), quantizer));
+            x.or(y.lanewise(VectorOperators.LSHL, 1)).intoArray(keys, i);
+        }
+        for (; i < n; i++) {
+            keys[i] = MortonKeys.encode(quantizer.quantizeX(xs[i]), quantizer.quantizeY(ys[i]));
+        }
+    }
+
+    /**
+     * Lane-wise {@link GridQuantizer#quantizeX(double)}: NaN and cells below
+     * zero end up in cell 0, cells above the grid in the last cell.
+     *
+     * The cell is truncated without a double to long conversion, which is not
+     * intrinsified on all JDKs: adding 2^52 rounds it to an integer held in
+     * the low mantissa bits, lanes that were rounded up are corrected by one.
+     */
+    private static LongVector quantize(double[] coords, int offset, double min, GridQuantizer quantizer) {
+        DoubleVector cell = DoubleVector.fromArray(DOUBLES, coords, offset)
+                .sub(min)
+                .mul(quantizer.getScale());
+        cell = DoubleVector.zero(DOUBLES)
+                .blend(cell, cell.compare(VectorOperators.GT, 0.0))
+                .min((double) quantizer.getMaxCell());
+        DoubleVector rounded = cell.add(MANTISSA_SHIFT).sub(MANTISSA_SHIFT);
+        rounded = rounded.sub(1.0, rounded.compare(VectorOperators.GT, cell));
+        return rounded.add(MANTISSA_SHIFT).reinterpretAsLongs().and(MANTISSA_MASK);
+    }
+
+    /**
+     * Lane-wise {@link MortonKeys#spread(long)}
+     */
+    private static LongVector spread(LongVector v) {
+        v = v.and(0x00000000FFFFFFFFL);
+        v = v.or(v.lanewise(VectorOperators.LSHL, 16)).and(0x0000FFFF0000FFFFL);
+        v = v.or(v.lanewise(VectorOperators.LSHL, 8)).and(0x00FF00FF00FF00FFL);
+        v = v.or(v.lanewise(VectorOperators.LSHL, 4)).and(0x0F0F0F0F0F0F0F0FL);
+        v = v.or(v.lanewise(VectorOperators.LSHL, 2)).and(0x3333333333333333L);
+        v = v.or(v.lanewise(VectorOperators.LSHL, 1)).and(0x5555555555555555L);
+        return v;
+    }
+}
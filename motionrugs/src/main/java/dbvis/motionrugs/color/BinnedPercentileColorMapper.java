@@ -23,18 +23,26 @@ import java.awt.Color;
  * @author Juri Buchmüller, University of Konstanz
  * <buchmueller@dbvis.inf.uni-konstanz.de>
  */
-public class BinnedPercentileColorMapper implements ColorMapper {
+public class BinnedPercentileColorMapper extends RangeColorMapper {
 
-    private double min;
-    private double max;
     private Double[] percentiles;
     private Color[] colors;
+    // copies as primitives for argb
+    private final double[] thresholds;
+    private final int[] palette;
 
     public BinnedPercentileColorMapper(Double[] percentiles, double min, double max, Color[] colors) {
-        this.min = min;
-        this.max = max;
+        super(min, max);
         this.percentiles = percentiles;
         this.colors = colors;
+        thresholds = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            thresholds[i] = percentiles[i];
+        }
+        palette = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            palette[i] = colors[i].getRGB();
+        }
     }
 
     @Override
@@ -43,24 +51,67 @@ public class BinnedPercentileColorMapper implements ColorMapper {
             throw new Exception("The given value " + value + " is outside the preset value range. The range is set from " + min + " to " + max);
         }
         //Todo: Normalization if quantiles and colors differ.
-        return colors[searchBin(value)];
+        return colors[Math.min(searchBin(value), colors.length - 1)];
     }
 
-    public int searchBin(double value) throws Exception {
-        if (value <= percentiles[0]) {
-            return 0;
-        }
-        if (value > percentiles[percentiles.length - 1]) {
-            return percentiles.length;
+    @Override
+    int argbInRange(double value) {
+        return palette[Math.min(searchBin(value), palette.length - 1)];
+    }
+
+    /**
+     * Returns the color bin a value is drawn with, following the policy for
+     * values outside of the range
+     *
+     * @param value the value
+     * @return the bin, -1 for values drawn with the out-of-range color
+     */
+    public int binOf(double value) {
+        if (!(value >= min && value <= max)) {
+            if (getPolicy() != OutOfRangePolicy.CLAMP || Double.isNaN(value)) {
+                return -1;
+            }
+            value = value < min ? min : max;
         }
+        return Math.min(searchBin(value), palette.length - 1);
+    }
 
-        for (int i = 0; i < percentiles.length; i++) {
+    /**
+     * @param bin a bin as returned by binOf
+     * @return the packed color of the bin
+     */
+    public int binColor(int bin) {
+        return bin < 0 ? getOutOfRangeColor() : palette[bin];
+    }
 
-            if (value > percentiles[i] && value <= percentiles[i + 1]) {
-                return i + 1;
-            }
+    /**
+     * @return the number of colors, bins range from 0 to getBinCount() - 1
+     */
+    public int getBinCount() {
+        return palette.length;
+    }
+
+    /**
+     * Returns the bin of a value: 0 up to the first percentile, i for values
+     * above percentile i - 1 up to percentile i, the number of percentiles
+     * above the last one. Binary search over the sorted percentiles.
+     *
+     * @param value the value
+     * @return the bin
+     */
+    public int searchBin(double value) {
+        if (thresholds.length == 0) {
+            return 0;
+        }
+        // halving without a data-dependent branch, bins are hard to predict
+        int base = 0;
+        int n = thresholds.length;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = thresholds[base + half - 1] < value ? base + half : base;
+            n -= half;
         }
-        return -1;
+        return thresholds[base] < value ? base + 1 : base;
     }
 
-}
+}
\ No newline at end of file
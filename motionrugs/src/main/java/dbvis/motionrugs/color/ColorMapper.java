@@ -26,5 +26,28 @@ import java.awt.Color;
 public interface ColorMapper {
     
     public Color getColorByValue(double value) throws Exception;
-    
+
+    /**
+     * Returns the packed ARGB color of a value. Never throws and does not
+     * allocate; values outside of the range of the mapper are mapped by its
+     * policy.
+     *
+     * @param value the value
+     * @return the color as ARGB int
+     */
+    public int argb(double value);
+
+    /**
+     * Maps a column of values at once, like {@link #argb(double)}
+     *
+     * @param values the values
+     * @param into receives the ARGB color of each value, at least as long as
+     * values
+     */
+    public default void map(double[] values, int[] into) {
+        for (int i = 0; i < values.length; i++) {
+            into[i] = argb(values[i]);
+        }
+    }
+
 }
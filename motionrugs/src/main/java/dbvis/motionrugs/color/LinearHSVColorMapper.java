@@ -18,17 +18,24 @@ package dbvis.motionrugs.color;
 import java.awt.Color;
 
 /**
- * HSV Color mapper
+ * HSV Color mapper. The gradient is precomputed into a lookup table of
+ * TABLE_SIZE colors whenever the anchors or the range change, so that mapping
+ * a value is an index computation.
  *
  * @author Juri Buchmüller, University of Konstanz
  * <buchmueller@dbvis.inf.uni-konstanz.de>
  */
-public class LinearHSVColorMapper implements ColorMapper{
+public class LinearHSVColorMapper extends RangeColorMapper {
+
+    public static final int TABLE_SIZE = 4096;
 
-    double min;
-    double max;
     double interval;
     Color[] steps;
+    // hue, saturation, brightness of each anchor
+    private float[][] hsvSteps;
+    // gradient sampled evenly from min to max
+    private final int[] table = new int[TABLE_SIZE];
+    private double indexScale;
 
     /**
      * HSVColorMapper instantiation with color map anchors. The given anchors
@@ -39,17 +46,15 @@ public class LinearHSVColorMapper implements ColorMapper{
      * @param steps A Color[] containing the color anchors.
      */
     public LinearHSVColorMapper(double min, double max, Color[] steps) {
-        this.min = min;
-        this.max = max;
-        this.steps = steps;
-        interval = 1.0 / (steps.length - 1);
+        super(min, max);
+        setSteps(steps);
     }
 
     /**
      * Returns the color interpolated for the given value according to the given
      * color anchors in HSV color space. The value will be normalized given the
      * set min and max values. The HSV color interpolation is linear with the
-     * shortest distance between two colors.
+     * shortest distance between two colors, taken from the lookup table.
      *
      * @param value The value for which the associated color is to be calculated
      * @return The color associated with the given value
@@ -61,55 +66,71 @@ public class LinearHSVColorMapper implements ColorMapper{
         if (value < min || value > max) {
             throw new Exception("The given value "+value+" is outside the preset value range. The range is set from " + min + " to " + max);
         }
-        double normalizedValue = (value - min) / (max - min);
+        return new Color(argbInRange(value));
+    }
 
-        int specificInterval = (int) Math.floor(normalizedValue / interval);
+    @Override
+    int argbInRange(double value) {
+        return table[(int) ((value - min) * indexScale + 0.5)];
+    }
 
-        Color c = new Color(128, 128, 128);
-        float[] hsv = new float[3];
-        Color.RGBtoHSB(c.getRed(), c.getGreen(), c.getBlue(), hsv);
+    @Override
+    public void map(double[] values, int[] into) {
+        for (int i = 0; i < values.length; i++) {
+            double value = values[i];
+            into[i] = value >= min && value <= max ? table[(int) ((value - min) * indexScale + 0.5)] : argb(value);
+        }
+    }
 
-        Color ret;
-        if (normalizedValue >= 1.0) {
-            ret = interpolate(steps[specificInterval - 1], steps[specificInterval], normalizedValue);
-        } else {
-            ret = interpolate(steps[specificInterval], steps[specificInterval + 1], normalizedValue);
+    /**
+     * Fills the lookup table, entry i holding the color of the value at
+     * i / (TABLE_SIZE - 1) of the range
+     */
+    private void buildTable() {
+        indexScale = max > min ? (TABLE_SIZE - 1) / (max - min) : 0.0;
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            double normalizedValue = max > min ? i / (double) (TABLE_SIZE - 1) : 0.0;
+
+            int specificInterval = (int) Math.floor(normalizedValue / interval);
+
+            if (normalizedValue >= 1.0) {
+                table[i] = interpolate(hsvSteps[specificInterval - 1], hsvSteps[specificInterval], normalizedValue);
+            } else {
+                table[i] = interpolate(hsvSteps[specificInterval], hsvSteps[specificInterval + 1], normalizedValue);
+            }
         }
-        return ret;
     }
 
     /**
-     * Interpolates between two given Colors in the HSV colorspace.
+     * Interpolates between two given colors in the HSV colorspace.
      *
-     * @param a The first color
-     * @param b The second color
+     * @param hsva The first color as hue, saturation, brightness
+     * @param hsvb The second color as hue, saturation, brightness
      * @param dvalue The fraction of the distance between the colors to be
      * interpolated
-     * @return The interpolated color based on the given fraction
+     * @return The interpolated color based on the given fraction, as RGB int
      */
-    private Color interpolate(Color a, Color b, double dvalue) {
+    private static int interpolate(float[] hsva, float[] hsvb, double dvalue) {
         float value = (float) dvalue;
-        float[] hsva = new float[3];
-        Color.RGBtoHSB(a.getRed(), a.getGreen(), a.getBlue(), hsva);
-        float[] hsvb = new float[3];
-        Color.RGBtoHSB(b.getRed(), b.getGreen(), b.getBlue(), hsvb);
+        float ha = hsva[0];
+        float hb = hsvb[0];
 
         float h = 0;
-        float d = hsvb[0] - hsva[0];
-        if (hsva[0] > hsvb[0]) {
-            float temp = hsvb[0];
-            hsvb[0] = hsva[0];
-            hsva[0] = temp;
+        float d = hb - ha;
+        if (ha > hb) {
+            float temp = hb;
+            hb = ha;
+            ha = temp;
             d = -d;
             value = 1.0f - value;
         }
         if (d > .5) {
-            hsva[0] += 1.0f;
-            h = (hsva[0] + value * (hsvb[0] - hsva[0])) % 1.0f;
+            ha += 1.0f;
+            h = (ha + value * (hb - ha)) % 1.0f;
         } else if (d <= .5) {
-            h = hsva[0] + value * d;
+            h = ha + value * d;
         }
-        return Color.getHSBColor(h, hsva[1] + value * (hsvb[1] - hsva[1]), hsva[2] + value * (hsvb[2] - hsva[2]));
+        return Color.HSBtoRGB(h, hsva[1] + value * (hsvb[1] - hsva[1]), hsva[2] + value * (hsvb[2] - hsva[2]));
     }
 
     public double getMin() {
@@ -118,6 +139,7 @@ public class LinearHSVColorMapper implements ColorMapper{
 
     public void setMin(double min) {
         this.min = min;
+        buildTable();
     }
 
     public double getMax() {
@@ -126,6 +148,7 @@ public class LinearHSVColorMapper implements ColorMapper{
 
     public void setMax(double max) {
         this.max = max;
+        buildTable();
     }
 
     public Color[] getSteps() {
@@ -135,5 +158,10 @@ public class LinearHSVColorMapper implements ColorMapper{
     public void setSteps(Color[] steps) {
         this.steps = steps;
         interval = 1.0 / (steps.length - 1);
+        hsvSteps = new float[steps.length][];
+        for (int i = 0; i < steps.length; i++) {
+            hsvSteps[i] = Color.RGBtoHSB(steps[i].getRed(), steps[i].getGreen(), steps[i].getBlue(), null);
+        }
+        buildTable();
     }
 }
@@ -0,0 +1,15 @@
+package dbvis.motionrugs.color;
+
+/**
+ * How a color mapper maps values outside of its min/max range
+ */
+public enum OutOfRangePolicy {
+    /**
+     * Values below min get the color of min, values above max the color of max
+     */
+    CLAMP,
+    /**
+     * Values outside of the range get the out-of-range color of the mapper
+     */
+    OUT_OF_RANGE_COLOR
+}
@@ -0,0 +1,54 @@
+package dbvis.motionrugs.color;
+
+import java.awt.Color;
+
+/**
+ * Base of the color mappers for a min/max value range. Handles values outside
+ * of the range by an {@link OutOfRangePolicy}, so that subclasses only map
+ * values within the range. NaN always gets the out-of-range color.
+ */
+public abstract class RangeColorMapper implements ColorMapper {
+
+    double min;
+    double max;
+    private OutOfRangePolicy policy = OutOfRangePolicy.CLAMP;
+    private int outOfRangeColor = Color.WHITE.getRGB();
+
+    RangeColorMapper(double min, double max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    @Override
+    public final int argb(double value) {
+        if (value >= min && value <= max) {
+            return argbInRange(value);
+        }
+        if (policy == OutOfRangePolicy.CLAMP && !Double.isNaN(value)) {
+            return argbInRange(value < min ? min : max);
+        }
+        return outOfRangeColor;
+    }
+
+    /**
+     * @param value a value between min and max
+     * @return the packed color of the value
+     */
+    abstract int argbInRange(double value);
+
+    public OutOfRangePolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(OutOfRangePolicy policy) {
+        this.policy = policy;
+    }
+
+    public int getOutOfRangeColor() {
+        return outOfRangeColor;
+    }
+
+    public void setOutOfRangeColor(int outOfRangeColor) {
+        this.outOfRangeColor = outOfRangeColor;
+    }
+}
@@ -186,6 +186,11 @@ public class CSVDataLoader {
             }
 
             CSVDataSet csvd = new CSVDataSet(featurelist, baseData, deciles, file.getName(), featureMinValues, featureMaxValues);
+
+            //Summarize all frames: a file of the same name may hold another run,
+            //so the summaries of a previous load are not extended
+            FrameSummaries.register(baseData, null);
+
             SessionData.getInstance().addDataset(csvd);
 
         } catch (FileNotFoundException ex) {
@@ -0,0 +1,345 @@
+package dbvis.motionrugs.data;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Spatial aggregates of every frame of a dataset, computed in one pass over
+ * the positions and stored in primitive arrays: centroid, bounding box,
+ * spread (variances and covariance around the centroid), mean velocity,
+ * heading and mean speed of the movers. The bounding box is also kept as
+ * prefix over the frames, so the box of the first n frames is a lookup.
+ *
+ * Velocities are taken between the same mover index in consecutive frames;
+ * the first frame has none. Summaries are registered per base data array
+ * (by identity) and are immutable, appended frames are summarized by
+ * {@link #extend(DataPoint[][])} without touching the known frames.
+ */
+public final class FrameSummaries {
+
+    private static final Map<DataPoint[][], FrameSummaries> REGISTRY = new WeakHashMap<>();
+
+    private final int frames;
+    private final double[] centroidX, centroidY;
+    private final double[] minX, minY, maxX, maxY;
+    private final double[] varianceX, varianceY, covariance;
+    private final double[] velocityX, velocityY, heading, meanSpeed;
+    private final double[] prefixMinX, prefixMinY, prefixMaxX, prefixMaxY;
+
+    private FrameSummaries(int frames) {
+        this.frames = frames;
+        centroidX = new double[frames];
+        centroidY = new double[frames];
+        minX = new double[frames];
+        minY = new double[frames];
+        maxX = new double[frames];
+        maxY = new double[frames];
+        varianceX = new double[frames];
+        varianceY = new double[frames];
+        covariance = new double[frames];
+        velocityX = new double[frames];
+        velocityY = new double[frames];
+        heading = new double[frames];
+        meanSpeed = new double[frames];
+        prefixMinX = new double[frames];
+        prefixMinY = new double[frames];
+        prefixMaxX = new double[frames];
+        prefixMaxY = new double[frames];
+    }
+
+    /**
+     * Returns the summaries of a base data array, computing and registering
+     * them on first use.
+     *
+     * @param data dataset, first dimension frames, second the movers
+     * @return the summaries of all frames of data
+     */
+    public static FrameSummaries of(DataPoint[][] data) {
+        synchronized (REGISTRY) {
+            FrameSummaries summaries = REGISTRY.get(data);
+            if (summaries == null) {
+                summaries = compute(data, null);
+                REGISTRY.put(data, summaries);
+            }
+            return summaries;
+        }
+    }
+
+    /**
+     * Registers the summaries of a freshly loaded base data array. If the data
+     * continues a previously loaded version of the same dataset, only the
+     * appended frames are summarized.
+     *
+     * @param data dataset, first dimension frames, second the movers
+     * @param previous summaries of the previous version whose frames are a
+     * prefix of data, or null
+     * @return the summaries of data
+     */
+    public static FrameSummaries register(DataPoint[][] data, FrameSummaries previous) {
+        FrameSummaries summaries = previous == null ? compute(data, null) : previous.extend(data);
+        synchronized (REGISTRY) {
+            REGISTRY.put(data, summaries);
+        }
+        return summaries;
+    }
+
+    /**
+     * Summarizes the frames of data beyond the frames known to this instance,
+     * which must be the same in data. If data has fewer frames, the
+     * summaries are truncated.
+     *
+     * @param data dataset continuing the summarized one
+     * @return the summaries of data
+     */
+    public FrameSummaries extend(DataPoint[][] data) {
+        return compute(data, this);
+    }
+
+    private static FrameSummaries compute(DataPoint[][] data, FrameSummaries known) {
+        FrameSummaries summaries = new FrameSummaries(data.length);
+        int from = known == null ? 0 : Math.min(known.frames, data.length);
+        if (from > 0) {
+            summaries.copyFrom(known, from);
+        }
+        for (int x = from; x < data.length; x++) {
+            summaries.summarize(data, x);
+        }
+        return summaries;
+    }
+
+    private void summarize(DataPoint[][] data, int x) {
+        DataPoint[] frame = data[x];
+        int count = frame.length;
+        double sumX = 0.0, sumY = 0.0;
+        double bMinX = Double.POSITIVE_INFINITY, bMinY = Double.POSITIVE_INFINITY;
+        double bMaxX = Double.NEGATIVE_INFINITY, bMaxY = Double.NEGATIVE_INFINITY;
+        for (int y = 0; y < count; y++) {
+            double px = frame[y].getX();
+            double py = frame[y].getY();
+            sumX += px;
+            sumY += py;
+            bMinX = Math.min(bMinX, px);
+            bMaxX = Math.max(bMaxX, px);
+            bMinY = Math.min(bMinY, py);
+            bMaxY = Math.max(bMaxY, py);
+        }
+        double cx = sumX / count;
+        double cy = sumY / count;
+
+        // second pass around the centroid, numerically safer than raw moments
+        double sxx = 0.0, syy = 0.0, sxy = 0.0;
+        for (int y = 0; y < count; y++) {
+            double dx = frame[y].getX() - cx;
+            double dy = frame[y].getY() - cy;
+            sxx += dx * dx;
+            syy += dy * dy;
+            sxy += dx * dy;
+        }
+
+        double vx = 0.0, vy = 0.0, speed = 0.0;
+        if (x > 0) {
+            DataPoint[] previous = data[x - 1];
+            int movers = Math.min(count, previous.length);
+            double sumVx = 0.0, sumVy = 0.0, sumSpeed = 0.0;
+            for (int y = 0; y < movers; y++) {
+                double dx = frame[y].getX() - previous[y].getX();
+                double dy = frame[y].getY() - previous[y].getY();
+                sumVx += dx;
+                sumVy += dy;
+                sumSpeed += Math.sqrt(dx * dx + dy * dy);
+            }
+            if (movers > 0) {
+                vx = sumVx / movers;
+                vy = sumVy / movers;
+                speed = sumSpeed / movers;
+            }
+        }
+
+        centroidX[x] = cx;
+        centroidY[x] = cy;
+        minX[x] = bMinX;
+        minY[x] = bMinY;
+        maxX[x] = bMaxX;
+        maxY[x] = bMaxY;
+        varianceX[x] = sxx / count;
+        varianceY[x] = syy / count;
+        covariance[x] = sxy / count;
+        velocityX[x] = vx;
+        velocityY[x] = vy;
+        heading[x] = Math.atan2(vy, vx);
+        meanSpeed[x] = speed;
+        prefixMinX[x] = x > 0 ? Math.min(prefixMinX[x - 1], bMinX) : bMinX;
+        prefixMinY[x] = x > 0 ? Math.min(prefixMinY[x - 1], bMinY) : bMinY;
+        prefixMaxX[x] = x > 0 ? Math.max(prefixMaxX[x - 1], bMaxX) : bMaxX;
+        prefixMaxY[x] = x > 0 ? Math.max(prefixMaxY[x - 1], bMaxY) : bMaxY;
+    }
+
+    private void copyFrom(FrameSummaries known, int count) {
+        System.arraycopy(known.centroidX, 0, centroidX, 0, count);
+        System.arraycopy(known.centroidY, 0, centroidY, 0, count);
+        System.arraycopy(known.minX, 0, minX, 0, count);
+        System.arraycopy(known.minY, 0, minY, 0, count);
+        System.arraycopy(known.maxX, 0, maxX, 0, count);
+        System.arraycopy(known.maxY, 0, maxY, 0, count);
+        System.arraycopy(known.varianceX, 0, varianceX, 0, count);
+        System.arraycopy(known.varianceY, 0, varianceY, 0, count);
+        System.arraycopy(known.covariance, 0, covariance, 0, count);
+        System.arraycopy(known.velocityX, 0, velocityX, 0, count);
+        System.arraycopy(known.velocityY, 0, velocityY, 0, count);
+        System.arraycopy(known.heading, 0, heading, 0, count);
+        System.arraycopy(known.meanSpeed, 0, meanSpeed, 0, count);
+        System.arraycopy(known.prefixMinX, 0, prefixMinX, 0, count);
+        System.arraycopy(known.prefixMinY, 0, prefixMinY, 0, count);
+        System.arraycopy(known.prefixMaxX, 0, prefixMaxX, 0, count);
+        System.arraycopy(known.prefixMaxY, 0, prefixMaxY, 0, count);
+    }
+
+    /**
+     * Returns the bounding box of a range of frames, from the prefix boxes if
+     * the range starts at the first frame.
+     *
+     * @param fromFrame first frame
+     * @param toFrame frame after the last frame
+     * @return {minX, minY, maxX, maxY}, infinite bounds for an empty range
+     */
+    public double[] getBounds(int fromFrame, int toFrame) {
+        if (fromFrame >= toFrame) {
+            return new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        }
+        if (fromFrame == 0) {
+            int last = toFrame - 1;
+            return new double[]{prefixMinX[last], prefixMinY[last], prefixMaxX[last], prefixMaxY[last]};
+        }
+        double[] bounds = getBounds(0, 0);
+        for (int x = fromFrame; x < toFrame; x++) {
+            bounds[0] = Math.min(bounds[0], minX[x]);
+            bounds[1] = Math.min(bounds[1], minY[x]);
+            bounds[2] = Math.max(bounds[2], maxX[x]);
+            bounds[3] = Math.max(bounds[3], maxY[x]);
+        }
+        return bounds;
+    }
+
+    /**
+     * @return the number of summarized frames
+     */
+    public int getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * @param frame frame index
+     * @return the mean x position of the movers
+     */
+    public double getCentroidX(int frame) {
+        return centroidX[frame];
+    }
+
+    /**
+     * @param frame frame index
+     * @return the mean y position of the movers
+     */
+    public double getCentroidY(int frame) {
+        return centroidY[frame];
+    }
+
+    /**
+     * @param frame frame index
+     * @return the smallest x position in the frame
+     */
+    public double getMinX(int frame) {
+        return minX[frame];
+    }
+
+    /**
+     * @param frame frame index
+     * @return the smallest y position in the frame
+     */
+    public double getMinY(int frame) {
+        return minY[frame];
+    }
+
+    /**
+     * @param frame frame index
+     * @return the largest x position in the frame
+     */
+    public double getMaxX(int frame) {
+        return maxX[frame];
+    }
+
+    /**
+     * @param frame frame index
+     * @return the largest y position in the frame
+     */
+    public double getMaxY(int frame) {
+        return maxY[frame];
+    }
+
+    /**
+     * @param frame frame index
+     * @return the variance of the x positions around the centroid
+     */
+    public double getVarianceX(int frame) {
+        return varianceX[frame];
+    }
+
+    /**
+     * @param frame frame index
+     * @return the variance of the y positions around the centroid
+     */
+    public double getVarianceY(int frame) {
+        return varianceY[frame];
+    }
+
+    /**
+     * @param frame frame index
+     * @return the covariance of the x and y positions
+     */
+    public double getCovariance(int frame) {
+        return covariance[frame];
+    }
+
+    /**
+     * @param frame frame index
+     * @return the root mean square distance of the movers to the centroid
+     */
+    public double getSpread(int frame) {
+        return Math.sqrt(varianceX[frame] + varianceY[frame]);
+    }
+
+    /**
+     * @param frame frame index
+     * @return the mean x displacement since the previous frame, 0 for the
+     * first frame
+     */
+    public double getVelocityX(int frame) {
+        return velocityX[frame];
+    }
+
+    /**
+     * @param frame frame index
+     * @return the mean y displacement since the previous frame, 0 for the
+     * first frame
+     */
+    public double getVelocityY(int frame) {
+        return velocityY[frame];
+    }
+
+    /**
+     * @param frame frame index
+     * @return the direction of the mean velocity in radians, as
+     * Math.atan2(vy, vx)
+     */
+    public double getHeading(int frame) {
+        return heading[frame];
+    }
+
+    /**
+     * @param frame frame index
+     * @return the mean distance the movers travelled since the previous frame
+     */
+    public double getMeanSpeed(int frame) {
+        return meanSpeed[frame];
+    }
+}
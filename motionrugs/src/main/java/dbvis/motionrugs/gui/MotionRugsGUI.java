@@ -19,17 +19,13 @@ import dbvis.motionrugs.data.CSVDataLoader;
 import dbvis.motionrugs.data.DataPoint;
 import dbvis.motionrugs.data.DataSet;
 import dbvis.motionrugs.data.SessionData;
-import dbvis.motionrugs.strategies.HilbertCurveStrategy;
-import dbvis.motionrugs.strategies.HilbertV2;
-import dbvis.motionrugs.strategies.QuadTreeStrategy;
-import dbvis.motionrugs.strategies.RTreeStrategy;
-import dbvis.motionrugs.strategies.Strategy;
-import dbvis.motionrugs.strategies.ZOrderCurveStrategy;
+import dbvis.motionrugs.strategies.IncrementalOrdering;
+import dbvis.motionrugs.strategies.OrderingEngine;
+import dbvis.motionrugs.strategies.StrategyRegistry;
 
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.awt.image.BufferedImage;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.BoxLayout;
@@ -55,12 +51,8 @@ public class MotionRugsGUI extends javax.swing.JFrame {
     private DataSet curDataSet;
     private JPanel addPanel = new JPanel();
     
-    // Ordering Strategies have to be instantiated here and added below where marked
-    private Strategy pqrstrategy = new QuadTreeStrategy();
-    private Strategy rtreestrategy = new RTreeStrategy();
-    private Strategy zorderstrategy = new ZOrderCurveStrategy();
-    private HilbertCurveStrategy hilbertcurvestrategy = new HilbertCurveStrategy();
-    private HilbertV2 hilbertv2strategy = new HilbertV2();
+    // Ordering strategies are found by the registry, see StrategyProvider
+    private OrderingEngine orderingEngine = new OrderingEngine(StrategyRegistry.load());
     
     // Auto-refresh variables
     private Timer autoRefreshTimer;
@@ -69,6 +61,9 @@ public class MotionRugsGUI extends javax.swing.JFrame {
     private String currentSelectedDataset;
     private String currentSelectedFeature;
     private String currentSelectedStrategy;
+    // Ordered frames of the auto-refreshed rug, only new frames are ordered on refresh
+    private IncrementalOrdering autoRefreshOrdering;
+    private String autoRefreshOrderingKey;
     
     private javax.swing.JToggleButton jToggleAutoRefresh;
     private javax.swing.JSpinner jSpinnerInterval;
@@ -78,9 +73,21 @@ public class MotionRugsGUI extends javax.swing.JFrame {
     private javax.swing.JPanel jPanelScaleFactor;
     private javax.swing.JLabel jLabelScaleFactor;
     private javax.swing.JSpinner jSpinnerScaleFactor;
+    private javax.swing.JLabel jLabelHorizontalScale;
+    private javax.swing.JSpinner jSpinnerHorizontalScale;
+    private javax.swing.JLabel jLabelMaxHeight;
+    private javax.swing.JSpinner jSpinnerMaxHeight;
+    private javax.swing.JComboBox<String> jComboRowAggregation;
     
     private JScrollPane autoRefreshScrollPane;
     private VisPanel autoRefreshPanel;
+    // Auto-refreshed rug, only new frames are rendered on refresh
+    private RugCanvas autoRefreshCanvas;
+    
+    // Rugs are saved as PNG in the background, on refresh only if enabled
+    private RugExporter rugExporter = new RugExporter();
+    private javax.swing.JCheckBox jCheckExportOnRefresh;
+    private javax.swing.JCheckBox jCheckFastPNG;
     
     /**
      * Constructor initializing the datasets and strategies
@@ -136,11 +143,9 @@ public class MotionRugsGUI extends javax.swing.JFrame {
         jComboBox6.removeAllItems();
         
         // Adding Strategy to selection menu
-        jComboBox6.addItem("Hilbert curve");
-        jComboBox6.addItem("HilbertV2");
-        jComboBox6.addItem("Point QuadTree");
-        jComboBox6.addItem("R-Tree");
-        jComboBox6.addItem("Z-Order");
+        for (String strategyName : orderingEngine.getRegistry().getNames()) {
+            jComboBox6.addItem(strategyName);
+        }
 
         jButton2.addActionListener(new ActionListener() {
             @Override
@@ -148,56 +153,59 @@ public class MotionRugsGUI extends javax.swing.JFrame {
                 currentSelectedDataset = jComboBox4.getItemAt(jComboBox4.getSelectedIndex());
                 currentSelectedFeature = jComboBox5.getItemAt(jComboBox5.getSelectedIndex());
                 currentSelectedStrategy = jComboBox6.getItemAt(jComboBox6.getSelectedIndex());
+                autoRefreshOrdering = null;
                 
                 // Ensure dataset is loaded
                 if (data.getDataset(currentSelectedDataset.replace(".csv", "")) == null) {
                     CSVDataLoader.loadSelectedFile(currentSelectedDataset);
                 }
                 
-                DataSet current = SessionData.getInstance().getDataset(currentSelectedDataset.replace(".csv", ""));
-                BufferedImage bf = null;
+                String datasetName = currentSelectedDataset.replace(".csv", "");
+                DataSet current = SessionData.getInstance().getDataset(datasetName);
                 DataPoint[][] orderedpoints = null;
 
-                // Order data based on selected strategy
-                switch (currentSelectedStrategy) {
-                    case "Point QuadTree":
-                        orderedpoints = pqrstrategy.getOrderedValues(current.getBaseData());
-                        break;
-                    case "R-Tree":
-                        orderedpoints = rtreestrategy.getOrderedValues(current.getBaseData());
-                        break;
-                    case "Hilbert curve":
-                        hilbertcurvestrategy.setHilbertOrder(100);
-                        orderedpoints = hilbertcurvestrategy.getOrderedValues(current.getBaseData());
-                        break;
-                    case "HilbertV2":
-                        hilbertv2strategy.setHilbertOrder(100);
-                        orderedpoints = hilbertv2strategy.getOrderedValues(current.getBaseData());
-                        break;
-                    case "Z-Order":
-                        orderedpoints = zorderstrategy.getOrderedValues(current.getBaseData());
-                        break;
-                }
-                
-                // Create image from reordered data
-                bf = PNGWriter.drawAndSaveRugs(orderedpoints, current.getMin(currentSelectedFeature), 
-                        current.getMax(currentSelectedFeature), current.getDeciles(currentSelectedFeature), 
-                        currentSelectedFeature, current.getName(), currentSelectedStrategy);
-                System.out.println("DONE REORDERING"); 
-                
                 if (autoRefreshEnabled) {
+                    // The auto-refreshed rug keeps growing from this ordering and image
+                    autoRefreshOrdering = orderingEngine.incremental(currentSelectedStrategy);
+                    autoRefreshOrderingKey = datasetName + "_" + currentSelectedStrategy;
+                    autoRefreshCanvas = new RugCanvas();
+                    orderedpoints = autoRefreshOrdering.update(current.getBaseData());
+                    autoRefreshCanvas.update(orderedpoints, 0, current.getMin(currentSelectedFeature), 
+                            current.getMax(currentSelectedFeature), current.getDeciles(currentSelectedFeature), 
+                            currentSelectedFeature);
+                    exportRug(orderedpoints.clone(), current);
+                    System.out.println("DONE REORDERING"); 
+                    
                     // If auto-refresh is enabled, update or create auto-refresh panel
-                    updateAutoRefreshPanel(bf, currentSelectedDataset.replace(".csv", ""), 
-                            currentSelectedFeature, currentSelectedStrategy);
+                    updateAutoRefreshPanel(true, datasetName, currentSelectedFeature, currentSelectedStrategy);
                 } else {
+                    // Order data based on selected strategy
+                    orderedpoints = orderingEngine.order(currentSelectedStrategy, current.getBaseData());
+                    
+                    // The rug is rendered from the reordered data as it is scrolled into view
+                    RugCanvas canvas = new RugCanvas();
+                    canvas.update(orderedpoints, 0, current.getMin(currentSelectedFeature), 
+                            current.getMax(currentSelectedFeature), current.getDeciles(currentSelectedFeature), 
+                            currentSelectedFeature);
+                    exportRug(orderedpoints, current);
+                    System.out.println("DONE REORDERING"); 
+                    
                     // If auto-refresh is disabled, add static panel
-                    repaintPanel(bf);
+                    repaintPanel(canvas);
                 }
             }
         });
         
         // Setup auto refresh timer
         setupAutoRefresh();
+        
+        // Write the queued rugs before exiting
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                rugExporter.close(10000);
+            }
+        });
     }
     
     /**
@@ -208,6 +216,9 @@ public class MotionRugsGUI extends javax.swing.JFrame {
         jToggleAutoRefresh = new javax.swing.JToggleButton("Auto Refresh");
         jLabelInterval = new javax.swing.JLabel("Interval (sec):");
         jSpinnerInterval = new javax.swing.JSpinner(new javax.swing.SpinnerNumberModel(1.0, 0.1, 300.0, 0.1));
+        jCheckExportOnRefresh = new javax.swing.JCheckBox("Save PNG on refresh", false);
+        jCheckFastPNG = new javax.swing.JCheckBox("Fast PNG", false);
+        jCheckExportOnRefresh.setToolTipText("Saves the whole rug after every refresh, slow for long sessions");
         
         // Setup refresh panel layout
         javax.swing.GroupLayout jPanelRefreshLayout = new javax.swing.GroupLayout(jPanelRefresh);
@@ -221,6 +232,10 @@ public class MotionRugsGUI extends javax.swing.JFrame {
                 .addComponent(jLabelInterval)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(jSpinnerInterval, javax.swing.GroupLayout.PREFERRED_SIZE, 60, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(jCheckExportOnRefresh)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(jCheckFastPNG)
                 .addContainerGap(50, Short.MAX_VALUE))
         );
         jPanelRefreshLayout.setVerticalGroup(
@@ -230,13 +245,22 @@ public class MotionRugsGUI extends javax.swing.JFrame {
                 .addGroup(jPanelRefreshLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jToggleAutoRefresh)
                     .addComponent(jLabelInterval)
-                    .addComponent(jSpinnerInterval, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                    .addComponent(jSpinnerInterval, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(jCheckExportOnRefresh)
+                    .addComponent(jCheckFastPNG))
                 .addGap(14, 14, 14))
         );
         
         // Add panel to main UI
         jPanel1.add(jPanelRefresh);
         
+        jCheckFastPNG.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                rugExporter.setFastCompression(jCheckFastPNG.isSelected());
+            }
+        });
+        
         // Setup action listeners
         jToggleAutoRefresh.addActionListener(new ActionListener() {
             @Override
@@ -288,6 +312,28 @@ public class MotionRugsGUI extends javax.swing.JFrame {
                         1   // step
                 )
         );
+        jLabelHorizontalScale = new javax.swing.JLabel("Horizontal Scale:");
+        jSpinnerHorizontalScale = new javax.swing.JSpinner(
+                new javax.swing.SpinnerNumberModel(
+                        PNGWriter.getHorizontalScaleFactor(), // initial value
+                        1,  // minimum
+                        10, // maximum
+                        1   // step
+                )
+        );
+        jSpinnerHorizontalScale.setToolTipText("Width of a column on screen, saved rugs keep one pixel per column");
+        jLabelMaxHeight = new javax.swing.JLabel("Max Height:");
+        jSpinnerMaxHeight = new javax.swing.JSpinner(
+                new javax.swing.SpinnerNumberModel(
+                        PNGWriter.getTargetHeight(), // initial value, 0 for no limit
+                        0,      // minimum
+                        100000, // maximum
+                        100     // step
+                )
+        );
+        jSpinnerMaxHeight.setToolTipText("Rugs are fitted into this height, several ranks share a row if needed (0: no limit)");
+        jComboRowAggregation = new javax.swing.JComboBox<>(new String[]{"Majority bin", "Mean value"});
+        jComboRowAggregation.setToolTipText("How ranks sharing a row are combined");
         
         // Setup scale factor panel layout
         javax.swing.GroupLayout jPanelScaleFactorLayout = new javax.swing.GroupLayout(jPanelScaleFactor);
@@ -299,6 +345,16 @@ public class MotionRugsGUI extends javax.swing.JFrame {
                 .addComponent(jLabelScaleFactor)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(jSpinnerScaleFactor, javax.swing.GroupLayout.PREFERRED_SIZE, 60, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(jLabelHorizontalScale)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(jSpinnerHorizontalScale, javax.swing.GroupLayout.PREFERRED_SIZE, 60, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(jLabelMaxHeight)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(jSpinnerMaxHeight, javax.swing.GroupLayout.PREFERRED_SIZE, 70, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(jComboRowAggregation, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addContainerGap(50, Short.MAX_VALUE))
         );
         jPanelScaleFactorLayout.setVerticalGroup(
@@ -307,7 +363,12 @@ public class MotionRugsGUI extends javax.swing.JFrame {
                 .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                 .addGroup(jPanelScaleFactorLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jLabelScaleFactor)
-                    .addComponent(jSpinnerScaleFactor, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                    .addComponent(jSpinnerScaleFactor, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(jLabelHorizontalScale)
+                    .addComponent(jSpinnerHorizontalScale, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(jLabelMaxHeight)
+                    .addComponent(jSpinnerMaxHeight, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(jComboRowAggregation, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addGap(14, 14, 14))
         );
         
@@ -319,10 +380,57 @@ public class MotionRugsGUI extends javax.swing.JFrame {
             @Override
             public void stateChanged(ChangeEvent e) {
                 PNGWriter.setVerticalScaleFactor((Integer) jSpinnerScaleFactor.getValue());
+                relayoutPanels();
+            }
+        });
+        
+        jSpinnerHorizontalScale.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                PNGWriter.setHorizontalScaleFactor((Integer) jSpinnerHorizontalScale.getValue());
+                relayoutPanels();
+            }
+        });
+        
+        jSpinnerMaxHeight.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                PNGWriter.setTargetHeight((Integer) jSpinnerMaxHeight.getValue());
+                relayoutPanels();
+            }
+        });
+        
+        jComboRowAggregation.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                PNGWriter.setRowAggregation(jComboRowAggregation.getSelectedIndex() == 1 
+                        ? RowAggregation.MEAN_VALUE : RowAggregation.MAJORITY_BIN);
+                relayoutPanels();
             }
         });
     }
     
+    /**
+     * Lays out and repaints the displayed rugs with the current settings of
+     * the PNGWriter. The rugs are stored unscaled, only a change of their
+     * rows renders them again.
+     */
+    private void relayoutPanels() {
+        for (java.awt.Component component : addPanel.getComponents()) {
+            if (component instanceof JScrollPane
+                    && ((JScrollPane) component).getViewport().getView() instanceof VisPanel) {
+                ((VisPanel) ((JScrollPane) component).getViewport().getView()).relayout();
+            }
+        }
+        if (autoRefreshScrollPane != null) {
+            autoRefreshScrollPane.setPreferredSize(new Dimension(
+                    autoRefreshScrollPane.getPreferredSize().width,
+                    Math.min(autoRefreshCanvas.getHeight() * autoRefreshCanvas.getVerticalScale() + 30, 500)));
+        }
+        addPanel.revalidate();
+        addPanel.repaint();
+    }
+    
     /**
      * Setup the auto refresh timer
      */
@@ -394,68 +502,81 @@ public class MotionRugsGUI extends javax.swing.JFrame {
             return;
         }
         
-        // Process with selected strategy
-        BufferedImage bf = null;
-        DataPoint[][] orderedpoints = null;
-        
-        // Use currently selected strategy
-        switch (currentSelectedStrategy) {
-            case "Point QuadTree":
-                orderedpoints = pqrstrategy.getOrderedValues(current.getBaseData());
-                break;
-            case "R-Tree":
-                orderedpoints = rtreestrategy.getOrderedValues(current.getBaseData());
-                break;
-            case "Hilbert curve":
-                hilbertcurvestrategy.setHilbertOrder(100);
-                orderedpoints = hilbertcurvestrategy.getOrderedValues(current.getBaseData());
-                break;
-            case "HilbertV2":
-                hilbertv2strategy.setHilbertOrder(100);
-                orderedpoints = hilbertv2strategy.getOrderedValues(current.getBaseData());
-                break;
-            case "Z-Order":
-                orderedpoints = zorderstrategy.getOrderedValues(current.getBaseData());
-                break;
+        // Incremental strategies only order the frames appended since the last refresh
+        String orderingKey = datasetName + "_" + currentSelectedStrategy;
+        if (autoRefreshOrdering == null || !orderingKey.equals(autoRefreshOrderingKey)) {
+            autoRefreshOrdering = orderingEngine.incremental(currentSelectedStrategy);
+            autoRefreshOrderingKey = orderingKey;
+            autoRefreshCanvas = new RugCanvas();
         }
+        DataPoint[][] orderedpoints = autoRefreshOrdering.update(current.getBaseData());
         
-        // Generate new image
-        bf = PNGWriter.drawAndSaveRugs(orderedpoints, current.getMin(currentSelectedFeature), 
-                current.getMax(currentSelectedFeature), current.getDeciles(currentSelectedFeature), 
-                currentSelectedFeature, current.getName(), currentSelectedStrategy);
+        // Render the newly ordered frames, the whole rug only if the color scale moved
+        boolean redraw = autoRefreshCanvas.update(orderedpoints, autoRefreshOrdering.getLastUpdateFrom(), 
+                current.getMin(currentSelectedFeature), current.getMax(currentSelectedFeature), 
+                current.getDeciles(currentSelectedFeature), currentSelectedFeature);
+        if (jCheckExportOnRefresh.isSelected()) {
+            // Queued exports of the same rug are replaced by this one; the
+            // frames ordered later are not part of it
+            exportRug(orderedpoints.clone(), current);
+        }
         
         // Update display for auto-refresh
-        updateAutoRefreshPanel(bf, datasetName, currentSelectedFeature, currentSelectedStrategy);
+        updateAutoRefreshPanel(redraw, datasetName, currentSelectedFeature, currentSelectedStrategy);
+    }
+    
+    /**
+     * Queues the selected rug of the dataset for saving, the image is only
+     * rendered by the exporter
+     * 
+     * @param orderedpoints the ordered frames, not changed afterwards
+     * @param current the dataset
+     */
+    private void exportRug(DataPoint[][] orderedpoints, DataSet current) {
+        String feature = currentSelectedFeature;
+        double min = current.getMin(feature);
+        double max = current.getMax(feature);
+        Double[] decs = current.getDeciles(feature);
+        // The settings may change on the EDT while the exporter renders
+        RugLayout layout = PNGWriter.layout(orderedpoints.length > 0 ? orderedpoints[0].length : 0);
+        rugExporter.export(() -> PNGWriter.drawRugs(orderedpoints, min, max, decs, feature, layout), 
+                PNGWriter.rugFile(current.getName(), feature, currentSelectedStrategy));
     }
     
     /**
-     * Update panel with new image for auto-refresh, reusing existing panel
+     * Update panel with the auto-refresh canvas, reusing existing panel. Only
+     * the columns changed by the last canvas update are repainted, unless the
+     * whole rug was redrawn.
      * 
-     * @param toAdd the Image to be displayed
+     * @param redraw whether the whole rug has to be repainted
      * @param datasetName the name of the dataset
      * @param featureName the name of the feature
      * @param strategyName the name of the strategy
      */
-    private void updateAutoRefreshPanel(BufferedImage toAdd, String datasetName, String featureName, String strategyName) {
+    private void updateAutoRefreshPanel(boolean redraw, String datasetName, String featureName, String strategyName) {
         if (autoRefreshScrollPane == null) {
-            autoRefreshPanel = new VisPanel(toAdd, datasetName, featureName, strategyName);
+            autoRefreshPanel = new VisPanel(autoRefreshCanvas, datasetName, featureName, strategyName);
             autoRefreshScrollPane = new JScrollPane(autoRefreshPanel, 
                     JScrollPane.VERTICAL_SCROLLBAR_NEVER, 
                     JScrollPane.HORIZONTAL_SCROLLBAR_ALWAYS);
             autoRefreshScrollPane.setPreferredSize(new Dimension(
                     Math.min(addPanel.getWidth(), 800),
-                    Math.min(toAdd.getHeight() + 30, 500)));
+                    Math.min(autoRefreshCanvas.getHeight() * autoRefreshCanvas.getVerticalScale() + 30, 500)));
             addPanel.add(autoRefreshScrollPane);
+            
+            // Refresh display
+            addPanel.revalidate();
+            addPanel.repaint();
+            this.validate();
         } else {
-            autoRefreshPanel.setImage(toAdd);
+            if (redraw || autoRefreshPanel.getCanvas() != autoRefreshCanvas) {
+                autoRefreshPanel.setCanvas(autoRefreshCanvas);
+            } else {
+                autoRefreshPanel.repaintColumns(autoRefreshCanvas.getDirtyFrom(), autoRefreshCanvas.getDirtyTo());
+            }
             autoRefreshPanel.updateMetadata(datasetName, featureName, strategyName);
         }
         
-        // Refresh display
-        addPanel.revalidate();
-        addPanel.repaint();
-        this.validate();
-        
         // Auto-scroll to the right edge
         SwingUtilities.invokeLater(() -> {
             if (autoRefreshScrollPane != null) {
@@ -470,9 +591,9 @@ public class MotionRugsGUI extends javax.swing.JFrame {
     /**
      * Repaints the Panel showing the visualizations by adding a new panel
      * 
-     * @param toAdd the Image to be added to the VisPanel
+     * @param toAdd the rug to be added to the VisPanel
      */
-    private void repaintPanel(BufferedImage toAdd) {
+    private void repaintPanel(RugCanvas toAdd) {
         // Create a new VisPanel with the image and metadata
         VisPanel visPanel = new VisPanel(toAdd, 
                 currentSelectedDataset.replace(".csv", ""), 
@@ -16,15 +16,14 @@
 package dbvis.motionrugs.gui;
 
 import dbvis.motionrugs.color.BinnedPercentileColorMapper;
+import dbvis.motionrugs.color.OutOfRangePolicy;
 import dbvis.motionrugs.data.DataPoint;
 import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
-import java.io.IOException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import javax.imageio.ImageIO;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
  * PNGWriter is responsible for the creation of the visualization images. It
@@ -36,6 +35,10 @@ import javax.imageio.ImageIO;
  */
 public class PNGWriter {
 
+    // Frames par tuile et rangées par bloc du rendu parallèle
+    private static final int TILE_COLUMNS = 64;
+    private static final int TILE_ROWS = 64;
+
     // Facteur d'agrandissement verticale, peut être paramétré depuis l'ui
     private static int verticalScaleFactor = 2;
     
@@ -49,6 +52,65 @@ public class PNGWriter {
         return verticalScaleFactor;
     }
 
+    // Facteur d'agrandissement horizontal, appliqué à l'affichage seulement
+    private static int horizontalScaleFactor = 1;
+
+    public static void setHorizontalScaleFactor(int factor) {
+        if (factor >= 1) {
+            horizontalScaleFactor = factor;
+        }
+    }
+
+    public static int getHorizontalScaleFactor() {
+        return horizontalScaleFactor;
+    }
+
+    // Hauteur maximale des rugs, 0 : pas de limite ; au-delà, les rangs
+    // consécutifs sont regroupés en une ligne
+    private static int targetHeight = 0;
+    private static RowAggregation rowAggregation = RowAggregation.MAJORITY_BIN;
+
+    /**
+     * Sets the height rugs are fitted into. Rows are enlarged only up to it,
+     * and swarms with more movers than the height get several consecutive
+     * ranks per row, combined by the row aggregation.
+     *
+     * @param height maximum height in pixels, 0 for none
+     */
+    public static void setTargetHeight(int height) {
+        if (height >= 0) {
+            targetHeight = height;
+        }
+    }
+
+    public static int getTargetHeight() {
+        return targetHeight;
+    }
+
+    public static void setRowAggregation(RowAggregation aggregation) {
+        rowAggregation = aggregation;
+    }
+
+    public static RowAggregation getRowAggregation() {
+        return rowAggregation;
+    }
+
+    /**
+     * @param movers number of movers per frame
+     * @return the vertical layout of a rug with the current settings
+     */
+    static RugLayout layout(int movers) {
+        return RugLayout.of(movers, verticalScaleFactor, targetHeight, rowAggregation);
+    }
+
+    /**
+     * @param rows number of rows of a rug
+     * @return the factor its rows are enlarged by with the current settings
+     */
+    static int verticalScale(int rows) {
+        return RugLayout.scale(rows, verticalScaleFactor, targetHeight);
+    }
+
     /**
      *
      * According to a chosen Colormapper, creates a BufferedImage of a Rugs
@@ -65,15 +127,81 @@ public class PNGWriter {
      * @return the MotionRug created from the ordered data
      */
     public static BufferedImage drawAndSaveRugs(DataPoint[][] da, double min, double max, Double[] decs, String featureID, String dsname, String stratid) {
+        BufferedImage awtImage = drawRugs(da, min, max, decs, featureID);
+        RugExporter.write(awtImage, rugFile(dsname, featureID, stratid), false);
+        return awtImage;
+    }
+
+    /**
+     * Returns the file a rug is saved to in the default project directory
+     *
+     * @param dsname the name of the displayed dataset
+     * @param featureID the name of the displayed feature
+     * @param stratid the name of the chosen strategy
+     * @return the PNG file of the rug
+     */
+    public static File rugFile(String dsname, String featureID, String stratid) {
+        return new File(dsname + "_" + featureID + "_" + stratid + ".png");
+    }
+
+    /**
+     * According to a chosen Colormapper, creates a BufferedImage of a Rugs
+     * using one feature. The packed colors are written straight into the
+     * pixel array of the image, frame by frame into the first image row of
+     * each rug row, which is then copied to the rows of its vertical scaling.
+     * Tiles of frames and blocks of rows are rendered in parallel.
+     *
+     * @param da the array with ordered values
+     * @param min min value of the feature values for the color mapping
+     * @param max max value of the feature values for the color mapping
+     * @param decs the percentiles (bins) for the colors (limited to 10 currently)
+     * @param featureID the name of the displayed feature
+     * @return the MotionRug created from the ordered data
+     */
+    public static BufferedImage drawRugs(DataPoint[][] da, double min, double max, Double[] decs, String featureID) {
+        return drawRugs(da, min, max, decs, featureID, layout(da[0].length));
+    }
+
+    /**
+     * Creates the BufferedImage of a Rug with a given vertical layout, so
+     * that it can be rendered off the EDT without reading the settings
+     *
+     * @param da the array with ordered values
+     * @param min min value of the feature values for the color mapping
+     * @param max max value of the feature values for the color mapping
+     * @param decs the percentiles (bins) for the colors (limited to 10 currently)
+     * @param featureID the name of the displayed feature
+     * @param layout the vertical layout of the rug
+     * @return the MotionRug created from the ordered data
+     */
+    static BufferedImage drawRugs(DataPoint[][] da, double min, double max, Double[] decs, String featureID, RugLayout layout) {
         int imageWidth = Math.max(da.length, 800);
-        int imageHeight = da[0].length * verticalScaleFactor;
-        
+        int imageHeight = layout.getHeight();
+
         BufferedImage awtImage = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = awtImage.createGraphics();
-        g2d.setColor(Color.WHITE);
-        g2d.fillRect(0, 0, imageWidth, imageHeight);
-        g2d.dispose();
-        
+        int[] pixels = ((DataBufferInt) awtImage.getRaster().getDataBuffer()).getData();
+        int white = Color.WHITE.getRGB();
+
+        renderFrames(da, 0, da.length, layout, createMapper(min, max, decs, featureID), featureID, pixels, imageWidth, 0);
+
+        // Fond blanc à droite des frames
+        for (int y = 0; y < imageHeight; y++) {
+            Arrays.fill(pixels, y * imageWidth + da.length, (y + 1) * imageWidth, white);
+        }
+        return awtImage;
+    }
+
+    /**
+     * Creates the color mapper of a feature. Values outside of min and max get
+     * the color of the nearest bound, missing values are white.
+     *
+     * @param min min value of the feature values for the color mapping
+     * @param max max value of the feature values for the color mapping
+     * @param decs the percentiles (bins) for the colors (limited to 10 currently)
+     * @param featureID the name of the displayed feature
+     * @return the color mapper
+     */
+    static BinnedPercentileColorMapper createMapper(double min, double max, Double[] decs, String featureID) {
         Color[] colors;
         Double[] thresholds;
         
@@ -97,36 +225,79 @@ public class PNGWriter {
             thresholds = decs;
         }
         
+        // Valeurs hors de [min, max] : couleur de la borne la plus proche
         BinnedPercentileColorMapper bqcm = new BinnedPercentileColorMapper(thresholds, min, max, colors);
+        bqcm.setPolicy(OutOfRangePolicy.CLAMP);
+        bqcm.setOutOfRangeColor(Color.WHITE.getRGB());
+        return bqcm;
+    }
 
-        for (int x = 0; x < da.length; x++) {
-            for (int y = 0; y < da[x].length; y++) {
-                try {
-                    if (da[x][y].getValue(featureID) < min) {
-                        System.out.println("ERROR: " + featureID + " " + da[x][y].getValue(featureID) + "<" + min + ", id " + min + ", frame " + y);
+    /**
+     * Renders the columns of a range of frames into the pixels of a rug
+     * image, including the rows of the vertical scaling. Tiles of frames and
+     * blocks of rows are rendered in parallel, the mapper is only read. The
+     * image may hold a part of the rug starting at originFrame. Where the
+     * layout combines several ranks per row, each row is computed once from
+     * its movers.
+     *
+     * @param da the array with ordered values
+     * @param fromFrame first frame to render
+     * @param toFrame frame after the last frame to render
+     * @param layout the vertical layout of the rug, movers beyond are left out
+     * @param mapper the color mapper of the feature
+     * @param featureID the name of the displayed feature
+     * @param pixels the pixels of the image
+     * @param imageWidth the width of the image
+     * @param originFrame the frame in the first column of the image
+     */
+    static void renderFrames(DataPoint[][] da, int fromFrame, int toFrame, RugLayout layout, BinnedPercentileColorMapper mapper, String featureID, int[] pixels, int imageWidth, int originFrame) {
+        // Tuiles de colonnes (plages de frames) rendues en parallèle dans des
+        // régions disjointes du raster
+        int rows = layout.rows;
+        int scale = layout.scale;
+        int rowStride = scale * imageWidth;
+        int tiles = (toFrame - fromFrame + TILE_COLUMNS - 1) / TILE_COLUMNS;
+        IntStream.range(0, tiles).parallel().forEach(tile -> {
+            double[] values = new double[rows];
+            int[] column = new int[rows];
+            int[] counts = new int[mapper.getBinCount()];
+            int tileEnd = Math.min(toFrame, fromFrame + (tile + 1) * TILE_COLUMNS);
+            for (int x = fromFrame + tile * TILE_COLUMNS; x < tileEnd; x++) {
+                if (layout.ranksPerRow == 1) {
+                    int moverCount = Math.min(rows, da[x].length);
+                    for (int y = 0; y < moverCount; y++) {
+                        values[y] = da[x][y].getValue(featureID);
                     }
-                    
-                    Color pixelColor = bqcm.getColorByValue(da[x][y].getValue(featureID));
-                    
-                    for (int i = 0; i < verticalScaleFactor; i++) {
-                        awtImage.setRGB(x, y * verticalScaleFactor + i, pixelColor.getRGB());
+                    // NaN : couleur hors plage, blanc
+                    Arrays.fill(values, moverCount, rows, Double.NaN);
+                    mapper.map(values, column);
+                } else {
+                    // Plusieurs rangs par ligne : une classe par ligne
+                    layout.rowBins(da[x], featureID, mapper, counts, column);
+                    for (int y = 0; y < rows; y++) {
+                        column[y] = mapper.binColor(column[y]);
                     }
-                    
-                } catch (Exception ex) {
-                    System.out.println(featureID);
-                    Logger.getLogger(PNGWriter.class.getName()).log(Level.SEVERE, null, ex);
+                }
+                for (int y = 0; y < rows; y++) {
+                    pixels[y * rowStride + x - originFrame] = column[y];
                 }
             }
-        }
+        });
 
-        File outputfile = new File(dsname + "_" + featureID + "_" + stratid + ".png");
-        try {
-            ImageIO.write(awtImage, "png", outputfile);
-            return awtImage;
-        } catch (IOException ex) {
-            Logger.getLogger(PNGWriter.class.getName()).log(Level.SEVERE, null, ex);
+        // Copie des lignes pour l'agrandissement vertical
+        if (scale == 1) {
+            return;
         }
-        return awtImage;
+        int blocks = (rows + TILE_ROWS - 1) / TILE_ROWS;
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            int toRow = Math.min(rows, (block + 1) * TILE_ROWS);
+            for (int y = block * TILE_ROWS; y < toRow; y++) {
+                int rowStart = y * rowStride + fromFrame - originFrame;
+                for (int i = 1; i < scale; i++) {
+                    System.arraycopy(pixels, rowStart, pixels, rowStart + i * imageWidth, toFrame - fromFrame);
+                }
+            }
+        });
     }
 
 }
\ No newline at end of file
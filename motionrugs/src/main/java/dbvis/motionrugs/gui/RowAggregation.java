@@ -0,0 +1,16 @@
+package dbvis.motionrugs.gui;
+
+/**
+ * How the movers of consecutive ranks are combined into one row of a rug
+ * when there are more movers than rows
+ */
+public enum RowAggregation {
+    /**
+     * The color bin most of the movers fall into
+     */
+    MAJORITY_BIN,
+    /**
+     * The color of the mean value of the movers
+     */
+    MEAN_VALUE
+}
@@ -0,0 +1,392 @@
+package dbvis.motionrugs.gui;
+
+import dbvis.motionrugs.color.BinnedPercentileColorMapper;
+import dbvis.motionrugs.data.DataPoint;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rug of an ordered dataset that is rendered in tiles of TILE_WIDTH columns
+ * when they are painted. Only the most recently painted tiles are kept, as
+ * many as fit about two screens plus a margin, so the memory of a rug is
+ * bounded by the screen size rather than the number of frames. The ordered
+ * data is referenced, not copied.
+ *
+ * The tiles hold one pixel per column and row of the rug, the vertical scale
+ * factor is left to the painting, see getVerticalScale(), so that changing it
+ * only repaints the rug and the tiles take scale times less memory.
+ *
+ * For live sessions the canvas is updated with the grown dataset and only the
+ * columns of the frames that were ordered since are rendered again, so an
+ * update costs in proportion to the new frames. The color scale of the first
+ * rendering is kept as long as the deciles and range of the feature stay
+ * within the tolerance of it; beyond, all tiles are dropped and rendered
+ * with the new scale. A change of feature or of the rows of the rug, from
+ * the number of movers or the settings of the PNGWriter, also drops all
+ * tiles.
+ *
+ * Zoomed out to a level k, a column of the rug aggregates 2^k frames from a
+ * RugPyramid. The pyramid is built when the rug is first zoomed out, rugs
+ * that are never zoomed out do without it, and is then extended with the
+ * frames of each update so that every zoom level is available at once.
+ * Categorical features use the most frequent bin per row, all others the
+ * mean bin.
+ *
+ * The canvas is used from the event dispatch thread.
+ */
+public class RugCanvas {
+
+    public static final int TILE_WIDTH = 256;
+    public static final double DEFAULT_SCALE_TOLERANCE = 0.05;
+    private static final int MIN_WIDTH = 800;
+    // tiles rendered ahead on each side of the painted ones
+    private static final int MARGIN_TILES = 2;
+
+    private final int maxTiles;
+    // tile index to tile, least recently used first
+    private final Map<Integer, Tile> tiles;
+    private DataPoint[][] da = new DataPoint[0][];
+    private RugLayout layout;
+    private int frameCount;
+    private double scaleTolerance = DEFAULT_SCALE_TOLERANCE;
+
+    // color scale the tiles are drawn with
+    private String featureID;
+    private double min;
+    private double max;
+    private Double[] decs;
+    private BinnedPercentileColorMapper mapper;
+
+    // frames per column are 2^level, levels above 0 come from the pyramid,
+    // null until the rug is zoomed out
+    private int level;
+    private RugPyramid pyramid;
+
+    // columns changed by the last update
+    private int dirtyFrom;
+    private int dirtyTo;
+
+    /**
+     * Creates a canvas keeping the tiles of about two screens
+     */
+    public RugCanvas() {
+        this(defaultMaxTiles());
+    }
+
+    /**
+     * @param maxTiles number of rendered tiles kept
+     */
+    public RugCanvas(int maxTiles) {
+        this.maxTiles = Math.max(1, maxTiles);
+        this.tiles = new LinkedHashMap<Integer, Tile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest) {
+                return size() > RugCanvas.this.maxTiles;
+            }
+        };
+    }
+
+    private static int defaultMaxTiles() {
+        int screenWidth = GraphicsEnvironment.isHeadless() ? 1920 : Toolkit.getDefaultToolkit().getScreenSize().width;
+        return 2 * (screenWidth / TILE_WIDTH + 1) + 2 * MARGIN_TILES;
+    }
+
+    /**
+     * Rendered columns of one tile
+     */
+    private static final class Tile {
+
+        final BufferedImage image;
+        final int[] pixels;
+        // columns rendered from the left
+        int rendered;
+
+        Tile(int height) {
+            image = new BufferedImage(TILE_WIDTH, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            Arrays.fill(pixels, Color.WHITE.getRGB());
+        }
+    }
+
+    /**
+     * Takes over the ordered dataset, the tiles of frames that changed are
+     * rendered again when painted
+     *
+     * @param da the array with ordered values, the frames of the previous
+     * update followed by the new ones
+     * @param fromFrame first frame whose order changed since the last update,
+     * the columns before it are kept
+     * @param min min value of the feature values for the color mapping
+     * @param max max value of the feature values for the color mapping
+     * @param decs the percentiles (bins) for the colors
+     * @param featureID the name of the displayed feature
+     * @return true if all tiles were dropped and the whole rug has to be
+     * repainted
+     */
+    public boolean update(DataPoint[][] da, int fromFrame, double min, double max, Double[] decs, String featureID) {
+        RugLayout newLayout = PNGWriter.layout(da.length > 0 ? da[0].length : 0).scaled(1);
+        boolean redraw = mapper == null || !newLayout.equals(layout) || da.length < frameCount
+                || !featureID.equals(this.featureID) || scaleChanged(min, max, decs);
+        int from = Math.max(0, Math.min(fromFrame, frameCount));
+        if (redraw) {
+            layout = newLayout;
+            this.featureID = featureID;
+            this.min = min;
+            this.max = max;
+            this.decs = decs == null ? null : decs.clone();
+            mapper = PNGWriter.createMapper(min, max, decs, featureID);
+            pyramid = null;
+            tiles.clear();
+            from = 0;
+        } else {
+            invalidate(from >> level);
+        }
+        this.da = da;
+        frameCount = da.length;
+        level = Math.min(level, getLevelCount() - 1);
+        if (pyramid != null) {
+            pyramid.update(da, from);
+        } else if (level > 0) {
+            buildPyramid();
+        }
+        dirtyFrom = from >> level;
+        dirtyTo = redraw ? getWidth() : getColumnCount();
+        return redraw;
+    }
+
+    /**
+     * Lays the rug out again with the current settings of the PNGWriter. If
+     * its rows changed, e.g. with the target height or the row aggregation,
+     * all tiles are dropped and the rug is rendered again from the data of
+     * the last update.
+     *
+     * @return true if all tiles were dropped and the whole rug has to be
+     * repainted
+     */
+    public boolean relayout() {
+        if (mapper == null) {
+            return false;
+        }
+        return update(da, frameCount, min, max, decs, featureID);
+    }
+
+    /**
+     * Builds the pyramid over all frames, extended by later updates
+     */
+    private void buildPyramid() {
+        pyramid = new RugPyramid(mapper, featureID, layout,
+                featureID.equals("DominantParameter") ? RugPyramid.Aggregation.MODE : RugPyramid.Aggregation.MEAN);
+        pyramid.update(da, 0);
+    }
+
+    /**
+     * Whether the color scale moved by more than the tolerance, measured as a
+     * fraction of the range of the feature
+     */
+    private boolean scaleChanged(double min, double max, Double[] decs) {
+        if (decs == null || this.decs == null || decs.length != this.decs.length) {
+            return decs != this.decs;
+        }
+        double limit = scaleTolerance * (max - min);
+        if (Math.abs(min - this.min) > limit || Math.abs(max - this.max) > limit) {
+            return true;
+        }
+        for (int i = 0; i < decs.length; i++) {
+            if (!(Math.abs(decs[i] - this.decs[i]) <= limit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the tiles after the given column, the tile holding it keeps its
+     * columns before it
+     */
+    private void invalidate(int column) {
+        int firstTile = column / TILE_WIDTH;
+        for (Iterator<Map.Entry<Integer, Tile>> it = tiles.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Integer, Tile> entry = it.next();
+            if (entry.getKey() > firstTile) {
+                it.remove();
+            } else if (entry.getKey() == firstTile) {
+                Tile tile = entry.getValue();
+                tile.rendered = Math.min(tile.rendered, column - firstTile * TILE_WIDTH);
+            }
+        }
+    }
+
+    /**
+     * Returns a tile, rendering the columns it is missing
+     *
+     * @param index the tile, holding the columns from index * TILE_WIDTH
+     * @return the image of the tile, TILE_WIDTH wide and white beyond the
+     * last column
+     */
+    public BufferedImage getTile(int index) {
+        Tile tile = tiles.get(index);
+        if (tile == null) {
+            tile = new Tile(getHeight());
+            tiles.put(index, tile);
+        }
+        int start = index * TILE_WIDTH;
+        int end = Math.min(getColumnCount(), start + TILE_WIDTH);
+        if (start + tile.rendered < end) {
+            if (level == 0) {
+                PNGWriter.renderFrames(da, start + tile.rendered, end, layout, mapper, featureID, tile.pixels, TILE_WIDTH, start);
+            } else {
+                renderCells(start + tile.rendered, end, start, tile.pixels);
+            }
+            tile.rendered = end - start;
+        }
+        return tile.image;
+    }
+
+    /**
+     * Renders the aggregated columns of the current level into a tile
+     */
+    private void renderCells(int fromColumn, int toColumn, int originColumn, int[] pixels) {
+        int[] column = new int[layout.rows];
+        for (int c = fromColumn; c < toColumn; c++) {
+            pyramid.column(level, c, column);
+            for (int y = 0; y < layout.rows; y++) {
+                pixels[y * TILE_WIDTH + c - originColumn] = column[y];
+            }
+        }
+    }
+
+    /**
+     * Paints the columns of the rug in a range at one pixel per column and
+     * row, rendering the tiles needed and those of a margin around them. The
+     * graphics may be scaled to enlarge the rug.
+     *
+     * @param g the graphics to paint into
+     * @param x horizontal position of the first column of the rug
+     * @param y vertical position of the top of the rug
+     * @param fromX first column to paint
+     * @param toX column after the last one to paint
+     */
+    public void paint(Graphics g, int x, int y, int fromX, int toX) {
+        fromX = Math.max(0, fromX);
+        toX = Math.min(getWidth(), toX);
+        if (toX <= fromX || getHeight() == 0) {
+            return;
+        }
+        int firstTile = fromX / TILE_WIDTH;
+        int lastTile = (toX - 1) / TILE_WIDTH;
+        for (int t = firstTile; t <= lastTile; t++) {
+            int start = t * TILE_WIDTH;
+            int left = Math.max(fromX, start) - start;
+            int right = Math.min(toX, start + TILE_WIDTH) - start;
+            g.drawImage(getTile(t), x + start + left, y, x + start + right, y + getHeight(), left, 0, right, getHeight(), null);
+        }
+        int tileCount = (getWidth() + TILE_WIDTH - 1) / TILE_WIDTH;
+        for (int m = 1; m <= MARGIN_TILES; m++) {
+            if (firstTile - m >= 0) {
+                getTile(firstTile - m);
+            }
+            if (lastTile + m < tileCount) {
+                getTile(lastTile + m);
+            }
+        }
+    }
+
+    /**
+     * @return the width of the rug at the current level, at least 800 like
+     * the images of the PNGWriter
+     */
+    public int getWidth() {
+        return Math.max(MIN_WIDTH, getColumnCount());
+    }
+
+    /**
+     * @return the number of columns holding frames at the current level
+     */
+    public int getColumnCount() {
+        return (int) ((frameCount + (1L << level) - 1) >> level);
+    }
+
+    /**
+     * Sets the zoom level, all tiles are rendered again. The first zoom out
+     * builds the pyramid.
+     *
+     * @param level 2^level frames per column, from 0 to getLevelCount() - 1
+     */
+    public void setLevel(int level) {
+        level = Math.max(0, Math.min(level, getLevelCount() - 1));
+        if (level != this.level) {
+            if (level > 0 && pyramid == null) {
+                buildPyramid();
+            }
+            this.level = level;
+            tiles.clear();
+        }
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the number of zoom levels, up to the first level that fits
+     * the minimum width of the rug
+     */
+    public int getLevelCount() {
+        int count = 1;
+        while ((frameCount >> (count - 1)) > MIN_WIDTH) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of rows of the rug, its height without scaling
+     */
+    public int getHeight() {
+        return layout != null ? layout.rows : 0;
+    }
+
+    /**
+     * @return the factor the rows are enlarged by when painted, from the
+     * current settings of the PNGWriter
+     */
+    public int getVerticalScale() {
+        return PNGWriter.verticalScale(getHeight());
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return the first column changed by the last update
+     */
+    public int getDirtyFrom() {
+        return dirtyFrom;
+    }
+
+    /**
+     * @return the column after the last one changed by the last update
+     */
+    public int getDirtyTo() {
+        return dirtyTo;
+    }
+
+    /**
+     * Sets how far the deciles and range of the feature may move before all
+     * tiles are rendered again
+     *
+     * @param scaleTolerance fraction of the range of the feature
+     */
+    public void setScaleTolerance(double scaleTolerance) {
+        this.scaleTolerance = scaleTolerance;
+    }
+}
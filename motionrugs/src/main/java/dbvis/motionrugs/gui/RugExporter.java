@@ -0,0 +1,153 @@
+package dbvis.motionrugs.gui;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Saves rugs as PNG files on a background writer thread, so that encoding
+ * does not hold up the rendering and display of the rugs. Exports of the same
+ * file that are still waiting are coalesced: only the latest image is
+ * written. The images handed over must not be changed afterwards. Images can
+ * also be handed over as suppliers that render them on the writer thread, so
+ * that only the image being written is held in memory.
+ */
+public class RugExporter {
+
+    // compression quality of the fast mode, deflate level 1 in the PNG writer
+    private static final float FAST_COMPRESSION_QUALITY = 8f / 9f;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "rug-exporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // latest image waiting per file, a file is queued once while it has one
+    private final Map<File, Supplier<BufferedImage>> pending = new HashMap<>();
+    private volatile boolean fastCompression = false;
+
+    /**
+     * Queues the image to be written to the file. If an export of the file
+     * is still waiting, its image is replaced instead.
+     *
+     * @param image the rug to save
+     * @param file the PNG file to write
+     */
+    public void export(BufferedImage image, File file) {
+        export(() -> image, file);
+    }
+
+    /**
+     * Queues the image rendered by the supplier to be written to the file. If
+     * an export of the file is still waiting, its image is replaced instead.
+     *
+     * @param image renders the rug to save on the writer thread, from data
+     * that is not changed afterwards
+     * @param file the PNG file to write
+     */
+    public void export(Supplier<BufferedImage> image, File file) {
+        synchronized (pending) {
+            if (pending.put(file, image) != null) {
+                return;
+            }
+        }
+        try {
+            writer.execute(() -> {
+                Supplier<BufferedImage> latest;
+                synchronized (pending) {
+                    latest = pending.remove(file);
+                }
+                try {
+                    write(latest.get(), file, fastCompression);
+                } catch (RuntimeException ex) {
+                    Logger.getLogger(RugExporter.class.getName()).log(Level.SEVERE, "Could not render " + file, ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            synchronized (pending) {
+                pending.remove(file);
+            }
+            Logger.getLogger(RugExporter.class.getName()).log(Level.WARNING, "Rug exporter closed, not saving " + file, ex);
+        }
+    }
+
+    /**
+     * Writes the image to the file on the calling thread
+     *
+     * @param image the rug to save
+     * @param file the PNG file to write
+     * @param fast whether to trade file size for encoding speed
+     */
+    public static void write(BufferedImage image, File file, boolean fast) {
+        try {
+            if (!fast) {
+                ImageIO.write(image, "png", file);
+                return;
+            }
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
+            ImageWriter pngWriter = writers.next();
+            ImageWriteParam param = pngWriter.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(FAST_COMPRESSION_QUALITY);
+            // the stream does not truncate, ImageIO.write deletes the old file as well
+            file.delete();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+                if (out == null) {
+                    throw new IIOException("Can't create an ImageOutputStream!");
+                }
+                pngWriter.setOutput(out);
+                pngWriter.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                pngWriter.dispose();
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(RugExporter.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Sets the fast compression for live sessions: the files get larger and
+     * take about half the time to encode
+     *
+     * @param fastCompression whether to trade file size for encoding speed
+     */
+    public void setFastCompression(boolean fastCompression) {
+        this.fastCompression = fastCompression;
+    }
+
+    public boolean isFastCompression() {
+        return fastCompression;
+    }
+
+    /**
+     * Writes the waiting exports and stops the writer thread
+     *
+     * @param timeoutMillis how long to wait for the waiting exports
+     */
+    public void close(long timeoutMillis) {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                Logger.getLogger(RugExporter.class.getName()).log(Level.WARNING, "Rug exports still pending at shutdown");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
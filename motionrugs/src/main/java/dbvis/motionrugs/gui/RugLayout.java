@@ -0,0 +1,135 @@
+package dbvis.motionrugs.gui;
+
+import dbvis.motionrugs.color.BinnedPercentileColorMapper;
+import dbvis.motionrugs.data.DataPoint;
+import java.util.Arrays;
+
+/**
+ * Vertical layout of a rug: how many consecutive ranks share a row and how
+ * many image rows each row takes. Without a target height, every mover gets
+ * its own row repeated scale times. With one, the rows are enlarged only as
+ * far as the target allows, and if there are more movers than the target,
+ * consecutive ranks are combined into one row.
+ */
+final class RugLayout {
+
+    final int movers;
+    final int ranksPerRow;
+    final int rows;
+    final int scale;
+    final RowAggregation aggregation;
+
+    private RugLayout(int movers, int ranksPerRow, int scale, RowAggregation aggregation) {
+        this.movers = movers;
+        this.ranksPerRow = ranksPerRow;
+        this.rows = (movers + ranksPerRow - 1) / ranksPerRow;
+        this.scale = scale;
+        this.aggregation = aggregation;
+    }
+
+    /**
+     * @param movers number of movers per frame
+     * @param scale vertical scale factor
+     * @param targetHeight maximum height of the rug, 0 for none
+     * @param aggregation how ranks sharing a row are combined
+     * @return the layout
+     */
+    static RugLayout of(int movers, int scale, int targetHeight, RowAggregation aggregation) {
+        int ranksPerRow = targetHeight <= 0 || movers <= targetHeight ? 1 : (movers + targetHeight - 1) / targetHeight;
+        RugLayout layout = new RugLayout(movers, ranksPerRow, 1, aggregation);
+        return layout.scaled(scale(layout.rows, scale, targetHeight));
+    }
+
+    /**
+     * @param rows number of rows of the rug
+     * @param scale vertical scale factor
+     * @param targetHeight maximum height of the rug, 0 for none
+     * @return the scale factor the rows are enlarged by, as far as the target
+     * height allows
+     */
+    static int scale(int rows, int scale, int targetHeight) {
+        if (targetHeight <= 0 || rows * scale <= targetHeight) {
+            return scale;
+        }
+        return Math.max(1, targetHeight / rows);
+    }
+
+    /**
+     * @param scale vertical scale factor
+     * @return the layout with the same rows, enlarged by the scale factor
+     */
+    RugLayout scaled(int scale) {
+        return scale == this.scale ? this : new RugLayout(movers, ranksPerRow, scale, aggregation);
+    }
+
+    /**
+     * @return the height of the rug in pixels
+     */
+    int getHeight() {
+        return rows * scale;
+    }
+
+    /**
+     * Computes the color bin of each row of a frame
+     *
+     * @param frame the ordered movers of the frame, missing ones are left
+     * out
+     * @param featureID the name of the displayed feature
+     * @param mapper the color mapper defining the bins
+     * @param counts scratch space of mapper.getBinCount() entries
+     * @param into receives the bin per row, -1 where no mover has a color
+     */
+    void rowBins(DataPoint[] frame, String featureID, BinnedPercentileColorMapper mapper, int[] counts, int[] into) {
+        int present = Math.min(movers, frame.length);
+        if (ranksPerRow == 1) {
+            for (int y = 0; y < present; y++) {
+                into[y] = mapper.binOf(frame[y].getValue(featureID));
+            }
+            Arrays.fill(into, present, rows, -1);
+            return;
+        }
+        for (int row = 0; row < rows; row++) {
+            int from = row * ranksPerRow;
+            int to = Math.min(present, from + ranksPerRow);
+            if (aggregation == RowAggregation.MEAN_VALUE) {
+                double sum = 0.0;
+                int n = 0;
+                for (int r = from; r < to; r++) {
+                    double value = frame[r].getValue(featureID);
+                    if (!Double.isNaN(value)) {
+                        sum += value;
+                        n++;
+                    }
+                }
+                into[row] = n > 0 ? mapper.binOf(sum / n) : -1;
+            } else {
+                Arrays.fill(counts, 0);
+                int majority = -1;
+                int majorityCount = 0;
+                for (int r = from; r < to; r++) {
+                    int bin = mapper.binOf(frame[r].getValue(featureID));
+                    if (bin >= 0 && ++counts[bin] > majorityCount) {
+                        majorityCount = counts[bin];
+                        majority = bin;
+                    }
+                }
+                into[row] = majority;
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof RugLayout)) {
+            return false;
+        }
+        RugLayout other = (RugLayout) o;
+        return movers == other.movers && ranksPerRow == other.ranksPerRow && scale == other.scale
+                && (ranksPerRow == 1 || aggregation == other.aggregation);
+    }
+
+    @Override
+    public int hashCode() {
+        return (movers * 31 + ranksPerRow) * 31 + scale;
+    }
+}
@@ -0,0 +1,226 @@
+package dbvis.motionrugs.gui;
+
+import dbvis.motionrugs.color.BinnedPercentileColorMapper;
+import dbvis.motionrugs.data.DataPoint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Temporally aggregated levels of a rug for zoomed out views. A cell of level
+ * k aggregates 2^k consecutive frames; for each row it holds the color bin of
+ * the row in those frames, their mean bin or the most frequent one. Rows are
+ * the ranks, or groups of ranks where the layout of the rug combines them.
+ * Level 0 are the frames themselves and is not stored.
+ *
+ * The levels are built incrementally as frames are appended. Each level keeps
+ * the bin histograms of its open cell per row, a completed cell is reduced
+ * to its bins and its histograms are added to the open cell of the next
+ * level, so appending costs O(rows * bins) per frame amortized. The stored
+ * levels take about one byte per frame and row.
+ */
+public class RugPyramid {
+
+    /**
+     * How the bins of the frames of a cell are combined
+     */
+    public enum Aggregation {
+        /**
+         * Bin nearest to the mean bin, for ordered bins like the deciles
+         */
+        MEAN,
+        /**
+         * Most frequent bin, for categorical features
+         */
+        MODE
+    }
+
+    private static final byte MISSING = -1;
+
+    private final BinnedPercentileColorMapper mapper;
+    private final String featureID;
+    private final RugLayout layout;
+    private final int rows;
+    private final int bins;
+    private final Aggregation aggregation;
+
+    // bins of the completed cells of levels 1, 2, ..., cell after cell
+    private final List<byte[]> levels = new ArrayList<>();
+    private final List<Integer> completed = new ArrayList<>();
+    // histograms of the open cell of levels 1, 2, ..., row after row
+    private final List<int[]> open = new ArrayList<>();
+    private int frameCount;
+    private int[] frameBins = new int[0];
+    private int[] counts;
+
+    /**
+     * @param mapper the color mapper defining the bins
+     * @param featureID the name of the displayed feature
+     * @param rows number of rug rows, movers beyond are left out
+     * @param aggregation how the bins of a cell are combined
+     */
+    public RugPyramid(BinnedPercentileColorMapper mapper, String featureID, int rows, Aggregation aggregation) {
+        this(mapper, featureID, RugLayout.of(rows, 1, 0, RowAggregation.MAJORITY_BIN), aggregation);
+    }
+
+    /**
+     * @param mapper the color mapper defining the bins
+     * @param featureID the name of the displayed feature
+     * @param layout the vertical layout of the rug, defining the rows
+     * @param aggregation how the bins of a cell are combined
+     */
+    RugPyramid(BinnedPercentileColorMapper mapper, String featureID, RugLayout layout, Aggregation aggregation) {
+        this.mapper = mapper;
+        this.featureID = featureID;
+        this.layout = layout;
+        this.rows = layout.rows;
+        this.bins = mapper.getBinCount();
+        this.aggregation = aggregation;
+        this.counts = new int[bins];
+    }
+
+    /**
+     * Adds the frames appended since the last update
+     *
+     * @param da the array with ordered values, the frames added before
+     * followed by the new ones
+     * @param fromFrame first frame whose order changed since the last update;
+     * if frames already added changed, the levels are built again
+     */
+    public void update(DataPoint[][] da, int fromFrame) {
+        if (fromFrame < frameCount || da.length < frameCount) {
+            levels.clear();
+            completed.clear();
+            open.clear();
+            frameCount = 0;
+        }
+        if (frameBins.length < rows) {
+            frameBins = new int[rows];
+        }
+        for (int x = frameCount; x < da.length; x++) {
+            layout.rowBins(da[x], featureID, mapper, counts, frameBins);
+            addFrame(frameBins);
+        }
+    }
+
+    private void addFrame(int[] frameBins) {
+        int[] histograms = openHistograms(1);
+        for (int y = 0; y < rows; y++) {
+            if (frameBins[y] >= 0) {
+                histograms[y * bins + frameBins[y]]++;
+            }
+        }
+        frameCount++;
+        // close the cells ending with this frame, bottom up
+        for (int level = 1; frameCount % (1 << level) == 0; level++) {
+            int[] closing = open.get(level - 1);
+            int cell = completed.get(level - 1);
+            byte[] cells = levels.get(level - 1);
+            if ((cell + 1) * rows > cells.length) {
+                cells = Arrays.copyOf(cells, Math.max((cell + 1) * rows, 2 * cells.length));
+                levels.set(level - 1, cells);
+            }
+            for (int y = 0; y < rows; y++) {
+                cells[cell * rows + y] = (byte) reduce(closing, y * bins);
+            }
+            completed.set(level - 1, cell + 1);
+
+            int[] parent = openHistograms(level + 1);
+            for (int i = 0; i < closing.length; i++) {
+                parent[i] += closing[i];
+            }
+            Arrays.fill(closing, 0);
+        }
+    }
+
+    private int[] openHistograms(int level) {
+        while (open.size() < level) {
+            open.add(new int[rows * bins]);
+            levels.add(new byte[0]);
+            completed.add(0);
+        }
+        return open.get(level - 1);
+    }
+
+    /**
+     * Combines the histogram of one row
+     *
+     * @return the bin, MISSING if no mover was in the row
+     */
+    private int reduce(int[] histograms, int offset) {
+        long total = 0;
+        long sum = 0;
+        int mode = MISSING;
+        int modeCount = 0;
+        for (int b = 0; b < bins; b++) {
+            int count = histograms[offset + b];
+            total += count;
+            sum += (long) b * count;
+            if (count > modeCount) {
+                modeCount = count;
+                mode = b;
+            }
+        }
+        if (total == 0) {
+            return MISSING;
+        }
+        return aggregation == Aggregation.MODE ? mode : (int) ((2 * sum + total) / (2 * total));
+    }
+
+    /**
+     * Returns the colors of one cell of a level, by row. The last cell may
+     * hold fewer than 2^level frames.
+     *
+     * @param level the level, from 1 to getLevelCount() - 1
+     * @param cell the cell, from 0 to getCellCount(level) - 1
+     * @param into receives the packed color per row, at least rows long
+     */
+    public void column(int level, int cell, int[] into) {
+        if (cell < completed.get(level - 1)) {
+            byte[] cells = levels.get(level - 1);
+            for (int y = 0; y < rows; y++) {
+                into[y] = mapper.binColor(cells[cell * rows + y]);
+            }
+            return;
+        }
+        // the open cell, its frames are spread over the open cells below
+        int[] histograms = new int[rows * bins];
+        for (int l = 1; l <= level; l++) {
+            int[] lower = open.get(l - 1);
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] += lower[i];
+            }
+        }
+        for (int y = 0; y < rows; y++) {
+            into[y] = mapper.binColor(reduce(histograms, y * bins));
+        }
+    }
+
+    /**
+     * @return the number of levels including level 0, up to the first level
+     * made of a single cell
+     */
+    public int getLevelCount() {
+        int count = 1;
+        while ((1L << (count - 1)) < frameCount) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @param level the level
+     * @return the number of cells of the level, the last one possibly partial
+     */
+    public int getCellCount(int level) {
+        return (int) ((frameCount + (1L << level) - 1) >> level);
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+}
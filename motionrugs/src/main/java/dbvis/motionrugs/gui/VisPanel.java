@@ -5,28 +5,40 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
 import java.awt.image.BufferedImage;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JViewport;
 import javax.swing.SwingUtilities;
 
 /**
- * Panel displaying the Motion Rugs
+ * Panel displaying the Motion Rugs, either from an image or from a RugCanvas
+ * of which only the visible part is rendered. A canvas is enlarged by the
+ * scale factors of the PNGWriter when painted, without interpolation.
  */
 public class VisPanel extends JPanel {
     
     private BufferedImage img;
+    private RugCanvas canvas;
     private JPanel headerPanel;
     private JLabel titleLabel;
     private JButton deleteButton;
+    private JButton zoomOutButton;
+    private JButton zoomInButton;
     private String datasetName;
     private String featureName;
     private String strategyName;
@@ -75,18 +87,20 @@ public class VisPanel extends JPanel {
         gbc.insets = new java.awt.Insets(2, 8, 2, 2);
         headerPanel.add(deleteButton, gbc);
         
-        // Title label
-        String titleText = feature != null ? feature : "Motion Rug";
-        if (dataset != null) {
-            titleText = dataset + " - " + titleText;
-        }
-        if (strategy != null) {
-            titleText += " (" + strategy + ")";
-        }
+        // Zoom buttons, shown for canvases
+        zoomOutButton = createHeaderButton("−", "Zoom out, more frames per column (Ctrl + mouse wheel)");
+        gbc.gridx = 1;
+        gbc.insets = new java.awt.Insets(2, 8, 2, 0);
+        headerPanel.add(zoomOutButton, gbc);
+        zoomInButton = createHeaderButton("+", "Zoom in, fewer frames per column (Ctrl + mouse wheel)");
+        gbc.gridx = 2;
+        gbc.insets = new java.awt.Insets(2, 2, 2, 2);
+        headerPanel.add(zoomInButton, gbc);
         
-        titleLabel = new JLabel(titleText);
+        // Title label
+        titleLabel = new JLabel(titleText());
         titleLabel.setFont(new Font("Sans-Serif", Font.BOLD, 12));
-        gbc.gridx = 1;
+        gbc.gridx = 3;
         gbc.weightx = 1.0;
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.insets = new java.awt.Insets(4, 8, 4, 4);
@@ -107,14 +121,107 @@ public class VisPanel extends JPanel {
             }
         });
         
+        zoomOutButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                zoom(1, getVisibleRect().x + getVisibleRect().width / 2);
+            }
+        });
+        
+        zoomInButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                zoom(-1, getVisibleRect().x + getVisibleRect().width / 2);
+            }
+        });
+        
+        // Ctrl + wheel zooms around the mouse, other wheel events scroll
+        addMouseWheelListener(new MouseWheelListener() {
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if (e.isControlDown() && canvas != null) {
+                    zoom(e.getWheelRotation() > 0 ? 1 : -1, e.getX());
+                } else if (getParent() != null) {
+                    getParent().dispatchEvent(SwingUtilities.convertMouseEvent(VisPanel.this, e, getParent()));
+                }
+            }
+        });
+        
         add(headerPanel, BorderLayout.NORTH);
         
-        if (img != null) {
-            // Set preferred size for scrolling
-            int panelWidth = Math.max(img.getWidth(), 800);
-            int panelHeight = img.getHeight() + headerPanel.getPreferredSize().height;
-            setPreferredSize(new Dimension(panelWidth, panelHeight));
+        // Set preferred size for scrolling
+        updatePreferredSize();
+    }
+    
+    private static JButton createHeaderButton(String text, String toolTip) {
+        JButton button = new JButton(text);
+        button.setToolTipText(toolTip);
+        button.setFont(new Font("Sans-Serif", Font.BOLD, 14));
+        button.setMargin(new java.awt.Insets(0, 5, 0, 5));
+        button.setFocusPainted(false);
+        return button;
+    }
+    
+    private String titleText() {
+        String titleText = featureName != null ? featureName : "Motion Rug";
+        if (datasetName != null) {
+            titleText = datasetName + " - " + titleText;
+        }
+        if (strategyName != null) {
+            titleText += " (" + strategyName + ")";
+        }
+        if (canvas != null && canvas.getLevel() > 0) {
+            titleText += " - " + (1 << canvas.getLevel()) + " frames per column";
         }
+        return titleText;
+    }
+    
+    /**
+     * Changes the zoom level of the canvas, keeping the frame at the given
+     * column at the same position in the view
+     * @param steps levels to zoom out, negative to zoom in
+     * @param anchorX the column to keep in place
+     */
+    public void zoom(int steps, int anchorX) {
+        if (canvas == null) {
+            return;
+        }
+        int oldLevel = canvas.getLevel();
+        canvas.setLevel(oldLevel + steps);
+        int newLevel = canvas.getLevel();
+        if (newLevel == oldLevel) {
+            return;
+        }
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+        int viewX = viewport != null ? viewport.getViewPosition().x : 0;
+        int xScale = PNGWriter.getHorizontalScaleFactor();
+        long frame = (long) (anchorX / xScale) << oldLevel;
+        int newAnchorX = (int) (frame >> newLevel) * xScale;
+        
+        titleLabel.setText(titleText());
+        updatePreferredSize();
+        revalidate();
+        repaint();
+        if (viewport != null) {
+            // lay out the new size now, so that the position is not clamped to the old one
+            viewport.getParent().validate();
+            int maxX = Math.max(0, getWidth() - viewport.getExtentSize().width);
+            int x = Math.max(0, Math.min(maxX, newAnchorX - (anchorX - viewX)));
+            viewport.setViewPosition(new Point(x, viewport.getViewPosition().y));
+        }
+    }
+    
+    /**
+     * Creates a new Panel with the given canvas and metadata
+     * @param canvas the rug to display
+     * @param dataset the dataset name
+     * @param feature the feature name
+     * @param strategy the strategy name
+     */
+    public VisPanel(RugCanvas canvas, String dataset, String feature, String strategy) {
+        this((BufferedImage) null, dataset, feature, strategy);
+        this.canvas = canvas;
+        updatePreferredSize();
     }
     
     /**
@@ -123,15 +230,74 @@ public class VisPanel extends JPanel {
      */
     public void setImage(BufferedImage newImg) {
         this.img = newImg;
-        if (newImg != null) {
-            int panelWidth = Math.max(newImg.getWidth(), 800);
-            int panelHeight = newImg.getHeight() + headerPanel.getPreferredSize().height;
-            setPreferredSize(new Dimension(panelWidth, panelHeight));
+        this.canvas = null;
+        updatePreferredSize();
+        revalidate();
+        repaint();
+    }
+    
+    /**
+     * Updates the canvas displayed in the panel
+     * @param newCanvas the new rug to display
+     */
+    public void setCanvas(RugCanvas newCanvas) {
+        this.canvas = newCanvas;
+        this.img = null;
+        titleLabel.setText(titleText());
+        updatePreferredSize();
+        revalidate();
+        repaint();
+    }
+    
+    /**
+     * Repaints the columns of the canvas that changed, after it grew
+     * @param fromX first changed column
+     * @param toX column after the last changed one
+     */
+    public void repaintColumns(int fromX, int toX) {
+        Dimension size = getPreferredSize();
+        updatePreferredSize();
+        if (!size.equals(getPreferredSize())) {
+            revalidate();
         }
+        if (toX > fromX) {
+            if (canvas != null) {
+                int xScale = PNGWriter.getHorizontalScaleFactor();
+                repaint(fromX * xScale, headerPanel.getHeight(), (toX - fromX) * xScale, canvas.getHeight() * canvas.getVerticalScale());
+            } else {
+                repaint(fromX, headerPanel.getHeight(), toX - fromX, img.getHeight());
+            }
+        }
+    }
+    
+    /**
+     * Lays out and repaints the panel after the settings of the PNGWriter
+     * changed. The canvas is only rendered again if its rows changed, not
+     * for the scale factors.
+     */
+    public void relayout() {
+        if (canvas != null) {
+            canvas.relayout();
+        }
+        updatePreferredSize();
         revalidate();
         repaint();
     }
     
+    private void updatePreferredSize() {
+        zoomOutButton.setVisible(canvas != null);
+        zoomInButton.setVisible(canvas != null);
+        if (canvas != null) {
+            int panelWidth = Math.max(canvas.getWidth() * PNGWriter.getHorizontalScaleFactor(), 800);
+            int panelHeight = canvas.getHeight() * canvas.getVerticalScale() + headerPanel.getPreferredSize().height;
+            setPreferredSize(new Dimension(panelWidth, panelHeight));
+        } else if (img != null) {
+            int panelWidth = Math.max(img.getWidth(), 800);
+            int panelHeight = img.getHeight() + headerPanel.getPreferredSize().height;
+            setPreferredSize(new Dimension(panelWidth, panelHeight));
+        }
+    }
+    
     /**
      * Updates the metadata displayed in the panel
      * @param dataset the dataset name
@@ -142,22 +308,29 @@ public class VisPanel extends JPanel {
         this.datasetName = dataset;
         this.featureName = feature;
         this.strategyName = strategy;
-        
-        String titleText = feature != null ? feature : "Motion Rug";
-        if (dataset != null) {
-            titleText = dataset + " - " + titleText;
-        }
-        if (strategy != null) {
-            titleText += " (" + strategy + ")";
-        }
-        
-        titleLabel.setText(titleText);
+        titleLabel.setText(titleText());
     }
     
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        if (img != null) {
+        if (canvas != null) {
+            // Only the tiles inside the clip are rendered and drawn, the rug
+            // is enlarged by the transform with the nearest pixel
+            int xScale = PNGWriter.getHorizontalScaleFactor();
+            Rectangle clip = g.getClipBounds();
+            int fromX = clip != null ? clip.x / xScale : 0;
+            int toX = clip != null ? (clip.x + clip.width + xScale - 1) / xScale : getWidth();
+            Graphics2D g2 = (Graphics2D) g.create();
+            try {
+                g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+                g2.translate(0, headerPanel.getHeight());
+                g2.scale(xScale, canvas.getVerticalScale());
+                canvas.paint(g2, 0, 0, fromX, toX);
+            } finally {
+                g2.dispose();
+            }
+        } else if (img != null) {
             g.drawImage(img, 0, headerPanel.getHeight(), this);
         }
     }
@@ -169,4 +342,12 @@ public class VisPanel extends JPanel {
     public Image getImage() {
         return img;
     }
+    
+    /**
+     * Returns the canvas used by this panel
+     * @return the canvas, null if the panel shows an image
+     */
+    public RugCanvas getCanvas() {
+        return canvas;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Orders a dataset with several strategies in one pass over the frames. Every
+ * frame is loaded into a single {@link FrameContext}, so its positions are
+ * read once and curve keys on the same grid are computed once for all
+ * strategies, e.g. for a curve strategy and its coherent variant. Strategies
+ * that are no {@link FrameStrategy} are run on their own.
+ */
+public final class BatchOrdering {
+
+    private BatchOrdering() {
+    }
+
+    /**
+     * Orders the complete dataset with every strategy
+     *
+     * @param strategies the strategies
+     * @param data dataset, first dimension frames, second the movers
+     * @return the ordered dataset of each strategy, in the order of strategies
+     */
+    public static List<DataPoint[][]> orderAll(List<? extends Strategy> strategies, DataPoint[][] data) {
+        return orderAll(strategies, data, null);
+    }
+
+    /**
+     * Orders the complete dataset with every strategy and records the ranks
+     * of the movers
+     *
+     * @param strategies the strategies
+     * @param data dataset, first dimension frames, second the movers
+     * @param ranks receives the ranks of each strategy, in the order of
+     * strategies, or null
+     * @return the ordered dataset of each strategy, in the order of strategies
+     */
+    public static List<DataPoint[][]> orderAll(List<? extends Strategy> strategies, DataPoint[][] data, List<RankIndex> ranks) {
+        List<DataPoint[][]> results = new ArrayList<>(strategies.size());
+        List<DataPoint[][]> fusedResults = new ArrayList<>();
+        List<RankIndex> fusedRanks = new ArrayList<>();
+        List<FrameStrategy.FrameOrderer> orderers = new ArrayList<>();
+        for (int s = 0; s < strategies.size(); s++) {
+            Strategy strategy = strategies.get(s);
+            RankIndex strategyRanks = ranks == null ? null : ranks.get(s);
+            DataPoint[][] result = new DataPoint[data.length][];
+            results.add(result);
+            if (strategy instanceof FrameStrategy) {
+                orderers.add(((FrameStrategy) strategy).orderer(data, 0));
+                fusedResults.add(result);
+                fusedRanks.add(strategyRanks);
+            } else if (strategyRanks != null) {
+                strategy.orderFrames(data, 0, data.length, result, strategyRanks);
+            } else {
+                strategy.orderFrames(data, 0, data.length, result);
+            }
+        }
+
+        FrameContext context = new FrameContext(data);
+        int[] perm = new int[0];
+        for (int x = 0; x < data.length; x++) {
+            context.load(x);
+            if (perm.length < context.size()) {
+                perm = new int[context.size()];
+            }
+            for (int s = 0; s < orderers.size(); s++) {
+                orderers.get(s).order(context, perm);
+                fusedResults.get(s)[x] = context.permute(perm);
+                if (fusedRanks.get(s) != null) {
+                    fusedRanks.get(s).record(x, perm, context.size());
+                }
+            }
+        }
+        return results;
+    }
+}
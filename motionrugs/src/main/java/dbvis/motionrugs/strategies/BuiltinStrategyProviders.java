@@ -0,0 +1,134 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.strategies.StrategyCapabilities.Complexity;
+import java.util.function.Supplier;
+
+/**
+ * Providers of the strategies shipped with MotionRugs, registered in
+ * META-INF/services like any other provider.
+ */
+public final class BuiltinStrategyProviders {
+
+    private BuiltinStrategyProviders() {
+    }
+
+    /**
+     * Provider taking its name from the strategies it creates
+     */
+    abstract static class BuiltinProvider implements StrategyProvider {
+
+        private final String name;
+        private final StrategyCapabilities capabilities;
+        private final Supplier<Strategy> factory;
+
+        BuiltinProvider(StrategyCapabilities capabilities, Supplier<Strategy> factory) {
+            this.name = factory.get().getName();
+            this.capabilities = capabilities;
+            this.factory = factory;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public StrategyCapabilities getCapabilities() {
+            return capabilities;
+        }
+
+        @Override
+        public Strategy createStrategy() {
+            return factory.get();
+        }
+    }
+
+    private static HilbertCurveStrategy hilbertCurve() {
+        HilbertCurveStrategy strategy = new HilbertCurveStrategy();
+        strategy.setHilbertOrder(GridQuantizer.MAX_BITS);
+        return strategy;
+    }
+
+    public static final class HilbertCurveProvider extends BuiltinProvider {
+
+        public HilbertCurveProvider() {
+            super(new StrategyCapabilities(true, true, false, Complexity.LINEAR),
+                    BuiltinStrategyProviders::hilbertCurve);
+        }
+    }
+
+    public static final class HilbertV2Provider extends BuiltinProvider {
+
+        public HilbertV2Provider() {
+            // not chunked by the engine: the frames are sorted in parallel
+            // within one call, and chunks would each replay the corner track
+            // and race on the single resume state
+            super(new StrategyCapabilities(false, true, true, Complexity.LINEAR), () -> {
+                HilbertV2 strategy = new HilbertV2();
+                strategy.setHilbertOrder(GridQuantizer.MAX_BITS);
+                return strategy;
+            });
+        }
+    }
+
+    public static final class QuadTreeProvider extends BuiltinProvider {
+
+        public QuadTreeProvider() {
+            super(new StrategyCapabilities(true, true, false, Complexity.LINEARITHMIC), QuadTreeStrategy::new);
+        }
+    }
+
+    public static final class RTreeProvider extends BuiltinProvider {
+
+        public RTreeProvider() {
+            super(new StrategyCapabilities(true, true, false, Complexity.LINEARITHMIC), RTreeStrategy::new);
+        }
+    }
+
+    public static final class ZOrderProvider extends BuiltinProvider {
+
+        public ZOrderProvider() {
+            super(new StrategyCapabilities(true, true, false, Complexity.LINEAR), ZOrderCurveStrategy::new);
+        }
+    }
+
+    public static final class CoherentHilbertCurveProvider extends BuiltinProvider {
+
+        public CoherentHilbertCurveProvider() {
+            // each frame is seeded with the order of the previous one
+            super(new StrategyCapabilities(false, true, true, Complexity.LINEAR),
+                    () -> new TemporalCoherenceStrategy(hilbertCurve()));
+        }
+    }
+
+    public static final class CoherentZOrderProvider extends BuiltinProvider {
+
+        public CoherentZOrderProvider() {
+            super(new StrategyCapabilities(false, true, true, Complexity.LINEAR),
+                    () -> new TemporalCoherenceStrategy(new ZOrderCurveStrategy()));
+        }
+    }
+
+    public static final class StableHilbertCurveProvider extends BuiltinProvider {
+
+        public StableHilbertCurveProvider() {
+            super(new StrategyCapabilities(false, true, true, Complexity.LINEARITHMIC),
+                    () -> new StableOrderingStrategy(hilbertCurve()));
+        }
+    }
+
+    public static final class PrincipalComponentProvider extends BuiltinProvider {
+
+        public PrincipalComponentProvider() {
+            // the axis signs are replayed from the frame summaries
+            super(new StrategyCapabilities(true, true, true, Complexity.LINEAR), PrincipalComponentStrategy::new);
+        }
+    }
+
+    public static final class DensityClustersProvider extends BuiltinProvider {
+
+        public DensityClustersProvider() {
+            super(new StrategyCapabilities(true, true, false, Complexity.LINEARITHMIC), DensityClusterStrategy::new);
+        }
+    }
+}
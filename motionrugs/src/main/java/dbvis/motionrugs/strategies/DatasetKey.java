@@ -0,0 +1,56 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+
+/**
+ * Identifies a dataset by the positions of the movers of its first frame, so
+ * that state a strategy keeps between calls is only reused for the frames of
+ * the same dataset. A dataset that grows keeps its key, also when it is
+ * loaded again into new arrays, as live sessions do on every refresh.
+ */
+final class DatasetKey {
+
+    private final DataPoint[] firstFrame;
+    private final double[] positions;
+
+    private DatasetKey(DataPoint[] firstFrame) {
+        this.firstFrame = firstFrame;
+        int n = firstFrame != null ? firstFrame.length : 0;
+        positions = new double[2 * n];
+        for (int i = 0; i < n; i++) {
+            positions[2 * i] = firstFrame[i].getX();
+            positions[2 * i + 1] = firstFrame[i].getY();
+        }
+    }
+
+    /**
+     * @param data dataset, first dimension frames, second the movers
+     * @return the key of the dataset
+     */
+    static DatasetKey of(DataPoint[][] data) {
+        return new DatasetKey(data.length > 0 ? data[0] : null);
+    }
+
+    /**
+     * @param data dataset, first dimension frames, second the movers
+     * @return whether the first frame of data has the positions of the one
+     * this key was made from
+     */
+    boolean matches(DataPoint[][] data) {
+        DataPoint[] frame = data.length > 0 ? data[0] : null;
+        if (frame == firstFrame) {
+            return true;
+        }
+        int n = frame != null ? frame.length : 0;
+        if (2 * n != positions.length) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (Double.compare(frame[i].getX(), positions[2 * i]) != 0
+                    || Double.compare(frame[i].getY(), positions[2 * i + 1]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
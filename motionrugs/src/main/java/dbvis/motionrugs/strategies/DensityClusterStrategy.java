@@ -0,0 +1,176 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+import dbvis.motionrugs.data.FrameSummaries;
+
+/**
+ * Density cluster ordering strategy. The movers of each frame are clustered
+ * with DBSCAN ({@link DensityClustering}), so that every sub-group of the
+ * swarm stays contiguous in the rug. Clusters are ordered by the Hilbert key
+ * of their centroid, the movers of a cluster by their own Hilbert key. Noise
+ * movers are placed by their own key between the clusters.
+ *
+ * Keys are taken on a grid over the bounding box of each frame, which makes
+ * the order independent of the other frames and of translations of the whole
+ * swarm. Unless set explicitly, the neighbourhood radius is a multiple of the
+ * mean spacing of the movers in the bounding box of the frame.
+ */
+public class DensityClusterStrategy implements FrameStrategy {
+
+    public static final double DEFAULT_SPACING_FACTOR = 1.5;
+    public static final int DEFAULT_MIN_POINTS = 4;
+
+    private static final int KEY_BITS = 16;
+
+    private double epsilon = 0.0;
+    private double spacingFactor = DEFAULT_SPACING_FACTOR;
+    private int minPoints = DEFAULT_MIN_POINTS;
+
+    @Override
+    public String getName() {
+        return "Density clusters";
+    }
+
+    @Override
+    public FrameOrderer orderer(DataPoint[][] unsorted, int fromFrame) {
+        return new ClusterOrderer(epsilon, spacingFactor, minPoints);
+    }
+
+    /**
+     * Orders the frames of one pass, clustering and buffers are reused for
+     * every frame
+     */
+    private static final class ClusterOrderer implements FrameOrderer {
+
+        private final double epsilon;
+        private final double spacingFactor;
+        private final int minPoints;
+        private final DensityClustering clustering = new DensityClustering();
+        private long[] keys = new long[0];
+        private long[] groupKeys = new long[0];
+        private int[] groupPerm = new int[0];
+        private int[] groupRank = new int[0];
+        private int[] noiseGroup = new int[0];
+        private double[] sumX = new double[0];
+        private double[] sumY = new double[0];
+        private int[] size = new int[0];
+
+        ClusterOrderer(double epsilon, double spacingFactor, int minPoints) {
+            this.epsilon = epsilon;
+            this.spacingFactor = spacingFactor;
+            this.minPoints = minPoints;
+        }
+
+        @Override
+        public void order(FrameContext frame, int[] perm) {
+            int n = frame.size();
+            int x = frame.getFrameIndex();
+            ensureCapacity(n);
+            double[] xs = frame.xs();
+            double[] ys = frame.ys();
+            FrameSummaries summaries = frame.getSummaries();
+
+            double width = summaries.getMaxX(x) - summaries.getMinX(x);
+            double height = summaries.getMaxY(x) - summaries.getMinY(x);
+            GridQuantizer quantizer = new GridQuantizer(summaries.getMinX(x), summaries.getMinY(x),
+                    summaries.getMaxX(x), summaries.getMaxY(x), KEY_BITS);
+            System.arraycopy(frame.hilbertKeys(quantizer), 0, keys, 0, n);
+
+            int clusters = n == 0 ? 0 : clustering.cluster(xs, ys, n, radius(width, height, n), minPoints);
+            int[] labels = clustering.getLabels();
+
+            // one group per cluster, keyed by its centroid, and one per noise mover
+            for (int c = 0; c < clusters; c++) {
+                sumX[c] = 0.0;
+                sumY[c] = 0.0;
+                size[c] = 0;
+            }
+            int groups = clusters;
+            for (int y = 0; y < n; y++) {
+                int c = labels[y];
+                if (c == DensityClustering.NOISE) {
+                    noiseGroup[y] = groups;
+                    groupKeys[groups++] = keys[y];
+                } else {
+                    sumX[c] += xs[y];
+                    sumY[c] += ys[y];
+                    size[c]++;
+                }
+            }
+            for (int c = 0; c < clusters; c++) {
+                groupKeys[c] = HilbertKeys.encode(quantizer.quantizeX(sumX[c] / size[c]),
+                        quantizer.quantizeY(sumY[c] / size[c]), KEY_BITS);
+            }
+            for (int g = 0; g < groups; g++) {
+                groupPerm[g] = g;
+            }
+            KeySort sorter = frame.getSorter();
+            sorter.radixSort(groupKeys, groupPerm, groups);
+            for (int g = 0; g < groups; g++) {
+                groupRank[groupPerm[g]] = g;
+            }
+
+            // rank of the group above the 32 bit key of the mover
+            for (int y = 0; y < n; y++) {
+                int group = labels[y] == DensityClustering.NOISE ? noiseGroup[y] : labels[y];
+                keys[y] = (long) groupRank[group] << 32 | keys[y];
+                perm[y] = y;
+            }
+            sorter.radixSort(keys, perm, n);
+        }
+
+        /**
+         * Returns the neighbourhood radius for a frame, epsilon if set, else
+         * the spacing factor times the mean spacing in the bounding box
+         */
+        private double radius(double width, double height, int n) {
+            if (epsilon > 0) {
+                return epsilon;
+            }
+            double spacing = Math.max(Math.sqrt(width * height / n), Math.max(width, height) / n);
+            // all movers on one spot, any radius joins them
+            return spacing > 0 ? spacingFactor * spacing : 1.0;
+        }
+
+        private void ensureCapacity(int n) {
+            if (keys.length < n) {
+                keys = new long[n];
+                groupKeys = new long[n];
+                groupPerm = new int[n];
+                groupRank = new int[n];
+                noiseGroup = new int[n];
+                sumX = new double[n];
+                sumY = new double[n];
+                size = new int[n];
+            }
+        }
+    }
+
+    /**
+     * Sets a fixed neighbourhood radius in data units
+     *
+     * @param epsilon the radius, 0 to derive it from the spacing of the movers
+     */
+    public void setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Sets the radius relative to the mean spacing of the movers, used when
+     * no fixed radius is set
+     *
+     * @param spacingFactor multiple of the mean spacing
+     */
+    public void setSpacingFactor(double spacingFactor) {
+        this.spacingFactor = spacingFactor;
+    }
+
+    /**
+     * Sets the density that makes a mover a core point of a cluster
+     *
+     * @param minPoints movers within the radius, including the mover itself
+     */
+    public void setMinPoints(int minPoints) {
+        this.minPoints = minPoints;
+    }
+}
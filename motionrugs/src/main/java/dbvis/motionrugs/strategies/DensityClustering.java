@@ -0,0 +1,284 @@
+package dbvis.motionrugs.strategies;
+
+import java.util.Arrays;
+
+/**
+ * DBSCAN density clustering of 2D points with a uniform grid as spatial
+ * hash. Cells have a diagonal of the neighbourhood radius, so the neighbours
+ * of a point lie in the surrounding 5x5 cells, and clustering takes
+ * near-linear time for bounded densities instead of O(n^2).
+ *
+ * The grid also saves most neighbour queries inside dense regions: all points
+ * of a cell are within the radius of each other, so a cell holding minPoints
+ * points consists of core points and is expanded as a whole, only looking at
+ * the points around it that are not yet claimed by a cluster.
+ *
+ * Cells are hashed into a bucket table of at least twice the number of
+ * points, laid out as one flat array sorted by bucket. Only non-empty cells
+ * cost memory, however sparse the points are. All buffers are kept between
+ * runs and only grow. Instances are not thread-safe.
+ */
+public final class DensityClustering {
+
+    /**
+     * Label of points that belong to no cluster
+     */
+    public static final int NOISE = -1;
+    private static final int UNCLASSIFIED = -2;
+    // cells on each side that can hold neighbours
+    private static final int REACH = 2;
+
+    private int[] cellX = new int[0];
+    private int[] cellY = new int[0];
+    private int[] bucketOf = new int[0];
+    private int[] bucketStart = new int[1];
+    private int[] bucketPoints = new int[0];
+    // points per bucket that are not yet part of a cluster
+    private int[] unclaimed = new int[0];
+    private int[] labels = new int[0];
+    private boolean[] expanded = new boolean[0];
+    private int[] queue = new int[0];
+    private int[] neighbours = new int[0];
+    private int bucketMask;
+
+    /**
+     * Clusters the points, the labels are available from getLabels()
+     *
+     * @param xs x coordinates
+     * @param ys y coordinates
+     * @param n number of points
+     * @param epsilon neighbourhood radius, greater than 0
+     * @param minPoints neighbours (including the point itself) that make a
+     * point a core point
+     * @return the number of clusters
+     */
+    public int cluster(double[] xs, double[] ys, int n, double epsilon, int minPoints) {
+        if (!(epsilon > 0)) {
+            throw new IllegalArgumentException("Epsilon must be greater than 0 but was " + epsilon);
+        }
+        ensureCapacity(n);
+        buildGrid(xs, ys, n, epsilon);
+
+        double epsilonSquared = epsilon * epsilon;
+        Arrays.fill(labels, 0, n, UNCLASSIFIED);
+        Arrays.fill(expanded, 0, n, false);
+        int clusters = 0;
+        for (int i = 0; i < n; i++) {
+            if (labels[i] != UNCLASSIFIED) {
+                continue;
+            }
+            boolean dense = cellSize(i) >= minPoints;
+            int count = 0;
+            if (!dense) {
+                count = neighbours(xs, ys, i, epsilonSquared);
+                if (count < minPoints) {
+                    labels[i] = NOISE;
+                    continue;
+                }
+            }
+
+            // grow the cluster from the core point, breadth first
+            int cluster = clusters++;
+            labels[i] = cluster;
+            unclaimed[bucketOf[i]]--;
+            int head = 0;
+            int tail = dense ? expandCell(xs, ys, i, cluster, 0, epsilonSquared) : claim(count, cluster, 0);
+            while (head < tail) {
+                int p = queue[head++];
+                if (expanded[p]) {
+                    continue;
+                }
+                if (cellSize(p) >= minPoints) {
+                    tail = expandCell(xs, ys, p, cluster, tail, epsilonSquared);
+                    continue;
+                }
+                count = neighbours(xs, ys, p, epsilonSquared);
+                if (count >= minPoints) {
+                    tail = claim(count, cluster, tail);
+                }
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * @return the cluster of each point, from 0, or NOISE; at least n long
+     */
+    public int[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * Adds the unclassified neighbours to the cluster and the queue, noise
+     * neighbours become border points of the cluster
+     */
+    private int claim(int count, int cluster, int tail) {
+        for (int k = 0; k < count; k++) {
+            int q = neighbours[k];
+            if (labels[q] == UNCLASSIFIED) {
+                labels[q] = cluster;
+                unclaimed[bucketOf[q]]--;
+                queue[tail++] = q;
+            } else if (labels[q] == NOISE) {
+                labels[q] = cluster;
+                unclaimed[bucketOf[q]]--;
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Collects the points within epsilon of point i, including i
+     *
+     * @return the number of neighbours
+     */
+    private int neighbours(double[] xs, double[] ys, int i, double epsilonSquared) {
+        int count = 0;
+        for (int dx = -REACH; dx <= REACH; dx++) {
+            for (int dy = -REACH; dy <= REACH; dy++) {
+                int cx = cellX[i] + dx;
+                int cy = cellY[i] + dy;
+                int bucket = hash(cx, cy);
+                for (int k = bucketStart[bucket]; k < bucketStart[bucket + 1]; k++) {
+                    int j = bucketPoints[k];
+                    // buckets are shared by all cells with the same hash
+                    if (cellX[j] != cx || cellY[j] != cy) {
+                        continue;
+                    }
+                    double ddx = xs[j] - xs[i];
+                    double ddy = ys[j] - ys[i];
+                    if (ddx * ddx + ddy * ddy <= epsilonSquared) {
+                        neighbours[count++] = j;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of points in the cell of point i
+     */
+    private int cellSize(int i) {
+        int count = 0;
+        int bucket = bucketOf[i];
+        for (int k = bucketStart[bucket]; k < bucketStart[bucket + 1]; k++) {
+            int j = bucketPoints[k];
+            if (cellX[j] == cellX[i] && cellY[j] == cellY[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Expands all points of a dense cell at once. They are core points within
+     * the radius of each other, so they join the cluster, and every unclaimed
+     * point within the radius of any of them is claimed. Buckets without
+     * unclaimed points are skipped, which makes the expansion cheap inside a
+     * cluster.
+     */
+    private int expandCell(double[] xs, double[] ys, int p, int cluster, int tail, double epsilonSquared) {
+        int cx = cellX[p];
+        int cy = cellY[p];
+        int cellBucket = bucketOf[p];
+        int cellStart = bucketStart[cellBucket];
+        int cellEnd = bucketStart[cellBucket + 1];
+        for (int k = cellStart; k < cellEnd; k++) {
+            int j = bucketPoints[k];
+            if (cellX[j] == cx && cellY[j] == cy) {
+                expanded[j] = true;
+                if (labels[j] == UNCLASSIFIED) {
+                    labels[j] = cluster;
+                    unclaimed[cellBucket]--;
+                }
+            }
+        }
+
+        for (int dx = -REACH; dx <= REACH; dx++) {
+            for (int dy = -REACH; dy <= REACH; dy++) {
+                int qx = cx + dx;
+                int qy = cy + dy;
+                int bucket = hash(qx, qy);
+                for (int k = bucketStart[bucket]; k < bucketStart[bucket + 1] && unclaimed[bucket] > 0; k++) {
+                    int q = bucketPoints[k];
+                    if (labels[q] >= 0 || cellX[q] != qx || cellY[q] != qy) {
+                        continue;
+                    }
+                    for (int m = cellStart; m < cellEnd; m++) {
+                        int j = bucketPoints[m];
+                        if (cellX[j] != cx || cellY[j] != cy) {
+                            continue;
+                        }
+                        double ddx = xs[j] - xs[q];
+                        double ddy = ys[j] - ys[q];
+                        if (ddx * ddx + ddy * ddy <= epsilonSquared) {
+                            if (labels[q] == UNCLASSIFIED) {
+                                queue[tail++] = q;
+                            }
+                            labels[q] = cluster;
+                            unclaimed[bucket]--;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Assigns the points to their cells and sorts them by bucket
+     */
+    private void buildGrid(double[] xs, double[] ys, int n, double epsilon) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+        }
+        double cellSide = epsilon / Math.sqrt(2);
+        int buckets = bucketMask + 1;
+        Arrays.fill(bucketStart, 0, buckets + 1, 0);
+        for (int i = 0; i < n; i++) {
+            cellX[i] = (int) Math.floor((xs[i] - minX) / cellSide);
+            cellY[i] = (int) Math.floor((ys[i] - minY) / cellSide);
+            bucketOf[i] = hash(cellX[i], cellY[i]);
+            bucketStart[bucketOf[i]]++;
+        }
+        // running totals give the end of each bucket, filling backwards turns them into starts
+        for (int b = 1; b < buckets; b++) {
+            bucketStart[b] += bucketStart[b - 1];
+        }
+        bucketStart[buckets] = n;
+        for (int i = n - 1; i >= 0; i--) {
+            bucketPoints[--bucketStart[bucketOf[i]]] = i;
+        }
+        for (int b = 0; b < buckets; b++) {
+            unclaimed[b] = bucketStart[b + 1] - bucketStart[b];
+        }
+    }
+
+    private int hash(int cx, int cy) {
+        int h = cx * 0x9E3779B1 + cy * 0x85EBCA77;
+        return (h ^ (h >>> 15)) & bucketMask;
+    }
+
+    private void ensureCapacity(int n) {
+        int buckets = Integer.highestOneBit(Math.max(1, 2 * n - 1)) << 1;
+        bucketMask = buckets - 1;
+        if (bucketStart.length < buckets + 1) {
+            bucketStart = new int[buckets + 1];
+            unclaimed = new int[buckets];
+        }
+        if (cellX.length < n) {
+            cellX = new int[n];
+            cellY = new int[n];
+            bucketOf = new int[n];
+            bucketPoints = new int[n];
+            labels = new int[n];
+            expanded = new boolean[n];
+            queue = new int[n];
+            neighbours = new int[n];
+        }
+    }
+}
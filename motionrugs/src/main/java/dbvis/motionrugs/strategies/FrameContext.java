@@ -0,0 +1,209 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+import dbvis.motionrugs.data.FrameSummaries;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The current frame of an ordering pass, shared by all strategies that order
+ * it. The positions are read from the DataPoints once per frame into
+ * primitive arrays, curve keys are computed once per curve and grid and
+ * reused by every strategy asking for the same keys, and the scratch buffers
+ * are shared by the strategies, which order the frame one after another.
+ *
+ * Arrays returned by a context are only valid until the next frame is loaded
+ * and must not be modified, except for the scratch buffers. Not thread-safe.
+ */
+public final class FrameContext {
+
+    private static final int HILBERT = 0;
+    private static final int MORTON = 1;
+
+    private final DataPoint[][] data;
+    private final KeyKernel kernel = KeyKernels.preferred();
+    private FrameSummaries summaries;
+
+    private int frameIndex = -1;
+    private int size;
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+
+    // keys computed for the current frame, by curve and grid; slots of
+    // earlier frames are reused, so there are as many as distinct curves and
+    // grids asked for within one frame
+    private final List<CachedKeys> keyCache = new ArrayList<>();
+
+    private final KeySort sorter = new KeySort();
+    private long[] keyScratch = new long[0];
+    private int[] permScratch = new int[0];
+
+    private static final class CachedKeys {
+
+        int curve;
+        GridQuantizer quantizer;
+        long[] keys = new long[0];
+        int frameIndex = -1;
+    }
+
+    /**
+     * @param data dataset, first dimension frames, second the movers
+     */
+    public FrameContext(DataPoint[][] data) {
+        this.data = data;
+    }
+
+    /**
+     * Makes a frame the current frame and reads the positions of its movers
+     *
+     * @param frameIndex index of the frame in the dataset
+     */
+    public void load(int frameIndex) {
+        DataPoint[] frame = data[frameIndex];
+        this.frameIndex = frameIndex;
+        size = frame.length;
+        if (xs.length < size) {
+            xs = new double[size];
+            ys = new double[size];
+            keyScratch = new long[size];
+            permScratch = new int[size];
+        }
+        for (int i = 0; i < size; i++) {
+            xs[i] = frame[i].getX();
+            ys[i] = frame[i].getY();
+        }
+    }
+
+    /**
+     * @return the dataset
+     */
+    public DataPoint[][] getData() {
+        return data;
+    }
+
+    /**
+     * @return the frame summaries of the dataset
+     */
+    public FrameSummaries getSummaries() {
+        if (summaries == null) {
+            summaries = FrameSummaries.of(data);
+        }
+        return summaries;
+    }
+
+    /**
+     * @return the index of the current frame
+     */
+    public int getFrameIndex() {
+        return frameIndex;
+    }
+
+    /**
+     * @return the movers of the current frame
+     */
+    public DataPoint[] getFrame() {
+        return data[frameIndex];
+    }
+
+    /**
+     * @return the number of movers in the current frame
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the x positions of the movers, at least size() long
+     */
+    public double[] xs() {
+        return xs;
+    }
+
+    /**
+     * @return the y positions of the movers, at least size() long
+     */
+    public double[] ys() {
+        return ys;
+    }
+
+    /**
+     * @param quantizer grid the positions are mapped onto
+     * @return the Hilbert keys of the movers, at least size() long
+     */
+    public long[] hilbertKeys(GridQuantizer quantizer) {
+        return keys(HILBERT, quantizer);
+    }
+
+    /**
+     * @param quantizer grid the positions are mapped onto
+     * @return the z-order keys of the movers, at least size() long
+     */
+    public long[] mortonKeys(GridQuantizer quantizer) {
+        return keys(MORTON, quantizer);
+    }
+
+    private long[] keys(int curve, GridQuantizer quantizer) {
+        CachedKeys free = null;
+        for (CachedKeys cached : keyCache) {
+            if (cached.frameIndex != frameIndex) {
+                if (free == null) {
+                    free = cached;
+                }
+            } else if (cached.curve == curve && cached.quantizer.equals(quantizer)) {
+                return cached.keys;
+            }
+        }
+        if (free == null) {
+            free = new CachedKeys();
+            keyCache.add(free);
+        }
+        if (free.keys.length < size) {
+            free.keys = new long[size];
+        }
+        if (curve == HILBERT) {
+            kernel.hilbertKeys(xs, ys, size, quantizer, free.keys);
+        } else {
+            kernel.mortonKeys(xs, ys, size, quantizer, free.keys);
+        }
+        free.curve = curve;
+        free.quantizer = quantizer;
+        free.frameIndex = frameIndex;
+        return free.keys;
+    }
+
+    /**
+     * @return a sorter shared by the strategies
+     */
+    public KeySort getSorter() {
+        return sorter;
+    }
+
+    /**
+     * @return a scratch key buffer of at least size() longs
+     */
+    public long[] keyScratch() {
+        return keyScratch;
+    }
+
+    /**
+     * @return a scratch permutation buffer of at least size() ints
+     */
+    public int[] permScratch() {
+        return permScratch;
+    }
+
+    /**
+     * Creates the ordered row of the current frame
+     *
+     * @param perm the order of the movers, at least size() long
+     * @return the movers in that order
+     */
+    public DataPoint[] permute(int[] perm) {
+        DataPoint[] frame = data[frameIndex];
+        DataPoint[] ordered = new DataPoint[size];
+        for (int y = 0; y < size; y++) {
+            ordered[y] = frame[perm[y]];
+        }
+        return ordered;
+    }
+}
@@ -0,0 +1,62 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+
+/**
+ * A strategy that orders one frame at a time from a {@link FrameContext}, so
+ * that several strategies can share the positions, keys and buffers of a
+ * frame (see {@link BatchOrdering}).
+ */
+public interface FrameStrategy extends Strategy {
+
+    /**
+     * Orders the consecutive frames of one pass. May keep state between
+     * frames, so one instance must not be used by several threads.
+     */
+    public interface FrameOrderer {
+
+        /**
+         * @param frame the current frame
+         * @param perm receives the order of the movers of the frame, at least
+         * frame.size() long
+         */
+        public void order(FrameContext frame, int[] perm);
+    }
+
+    /**
+     * Creates the orderer for a pass over the frames of data, starting at
+     * fromFrame and visiting every following frame in turn
+     *
+     * @param data dataset, first dimension frames, second the movers
+     * @param fromFrame first frame of the pass
+     * @return the orderer
+     */
+    public FrameOrderer orderer(DataPoint[][] data, int fromFrame);
+
+    @Override
+    public default void orderFrames(DataPoint[][] data, int fromFrame, int toFrame, DataPoint[][] into) {
+        orderPass(data, fromFrame, toFrame, into, null);
+    }
+
+    @Override
+    public default void orderFrames(DataPoint[][] data, int fromFrame, int toFrame, DataPoint[][] into, RankIndex ranks) {
+        orderPass(data, fromFrame, toFrame, into, ranks);
+    }
+
+    private void orderPass(DataPoint[][] data, int fromFrame, int toFrame, DataPoint[][] into, RankIndex ranks) {
+        FrameContext context = new FrameContext(data);
+        FrameOrderer orderer = orderer(data, fromFrame);
+        int[] perm = new int[0];
+        for (int x = fromFrame; x < toFrame; x++) {
+            context.load(x);
+            if (perm.length < context.size()) {
+                perm = new int[context.size()];
+            }
+            orderer.order(context, perm);
+            into[x] = context.permute(perm);
+            if (ranks != null) {
+                ranks.record(x, perm, context.size());
+            }
+        }
+    }
+}
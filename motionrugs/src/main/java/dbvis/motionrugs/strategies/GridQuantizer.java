@@ -0,0 +1,177 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+import dbvis.motionrugs.data.FrameSummaries;
+
+/**
+ * Maps continuous coordinates onto the cells of a square 2^bits x 2^bits grid
+ * laid over a bounding box. Both axes share one scale, so the aspect ratio of
+ * the movement is preserved. Coordinates outside the box are clamped to the
+ * border cells.
+ */
+public final class GridQuantizer {
+
+    public static final int MAX_BITS = 32;
+
+    private final double minX;
+    private final double minY;
+    private final double scale;
+    private final long maxCell;
+    private final int bits;
+
+    /**
+     * @param minX lower x bound of the box
+     * @param minY lower y bound of the box
+     * @param maxX upper x bound of the box
+     * @param maxY upper y bound of the box
+     * @param bits cells per axis as power of two, clamped to 1..32
+     */
+    public GridQuantizer(double minX, double minY, double maxX, double maxY, int bits) {
+        this.bits = Math.max(1, Math.min(MAX_BITS, bits));
+        this.minX = minX;
+        this.minY = minY;
+        this.maxCell = (1L << this.bits) - 1;
+        double extent = Math.max(maxX - minX, maxY - minY);
+        this.scale = extent > 0 ? (1L << this.bits) / extent : 0.0;
+    }
+
+    /**
+     * Creates a quantizer for the bounding box of the given frames, read from
+     * the frame summaries of the dataset
+     *
+     * @param data dataset
+     * @param fromFrame first frame of the box
+     * @param toFrame frame after the last frame of the box
+     * @param bits cells per axis as power of two
+     * @return the quantizer
+     */
+    public static GridQuantizer forFrames(DataPoint[][] data, int fromFrame, int toFrame, int bits) {
+        double[] bounds = FrameSummaries.of(data).getBounds(fromFrame, toFrame);
+        if (bounds[0] > bounds[2]) {
+            return new GridQuantizer(0.0, 0.0, 0.0, 0.0, bits);
+        }
+        return new GridQuantizer(bounds[0], bounds[1], bounds[2], bounds[3], bits);
+    }
+
+    /**
+     * Whether frames appended to a dataset change its grid, i.e. whether
+     * forFrames over all frames differs from the grid over the frames known
+     * before
+     *
+     * @param data dataset, the known frames followed by the appended ones
+     * @param knownFrames number of frames known before
+     * @param bits cells per axis as power of two
+     * @return true if the grid of all frames differs
+     */
+    public static boolean changesWith(DataPoint[][] data, int knownFrames, int bits) {
+        return !forFrames(data, 0, knownFrames, bits).equals(forFrames(data, 0, data.length, bits));
+    }
+
+    /**
+     * Creates a quantizer for the bounding box of the given points
+     *
+     * @param xs x coordinates
+     * @param ys y coordinates
+     * @param n number of points
+     * @param bits cells per axis as power of two
+     * @return the quantizer
+     */
+    public static GridQuantizer forPoints(double[] xs, double[] ys, int n, int bits) {
+        if (n == 0) {
+            return new GridQuantizer(0.0, 0.0, 0.0, 0.0, bits);
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        return new GridQuantizer(minX, minY, maxX, maxY, bits);
+    }
+
+    /**
+     * @param x coordinate
+     * @return the grid column of x, between 0 and getMaxCell()
+     */
+    public long quantizeX(double x) {
+        return clamp((x - minX) * scale);
+    }
+
+    /**
+     * @param y coordinate
+     * @return the grid row of y, between 0 and getMaxCell()
+     */
+    public long quantizeY(double y) {
+        return clamp((y - minY) * scale);
+    }
+
+    private long clamp(double cell) {
+        if (cell >= maxCell) {
+            return maxCell;
+        }
+        return cell > 0 ? (long) cell : 0L;
+    }
+
+    /**
+     * @return the lower x bound of the box
+     */
+    public double getMinX() {
+        return minX;
+    }
+
+    /**
+     * @return the lower y bound of the box
+     */
+    public double getMinY() {
+        return minY;
+    }
+
+    /**
+     * @return the cells per unit of both axes, 0 for an empty box
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * @return the bits per axis
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * @return the highest cell index per axis, 2^bits - 1
+     */
+    public long getMaxCell() {
+        return maxCell;
+    }
+
+    /**
+     * Quantizers are equal if they map every coordinate to the same cell
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof GridQuantizer)) {
+            return false;
+        }
+        GridQuantizer other = (GridQuantizer) obj;
+        return bits == other.bits
+                && Double.compare(minX, other.minX) == 0
+                && Double.compare(minY, other.minY) == 0
+                && Double.compare(scale, other.scale) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Double.hashCode(minX);
+        hash = 31 * hash + Double.hashCode(minY);
+        hash = 31 * hash + Double.hashCode(scale);
+        return 31 * hash + bits;
+    }
+}
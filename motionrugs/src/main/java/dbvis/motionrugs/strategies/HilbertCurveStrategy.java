@@ -16,8 +16,6 @@
 package dbvis.motionrugs.strategies;
 
 import dbvis.motionrugs.data.DataPoint;
-import java.util.Arrays;
-import java.util.Comparator;
 
 /**
  * Hilbert curve ordering strategy
@@ -25,10 +23,10 @@ import java.util.Comparator;
  * @author Eren Cakmak, University of Konstanz <cakmak@dbvis.inf.uni-konstanz.de>
  * @author Juri Buchmüller, University of Konstanz <buchmueller@dbvis.inf.uni-konstanz.de>
  */
-public class HilbertCurveStrategy implements Strategy {
+public class HilbertCurveStrategy implements KeyedStrategy {
 
-    //hilbert order value
-    private int hilbertOrder = 2;
+    //hilbert order value, bits per axis of the grid the positions are quantized to
+    private int hilbertOrder = 16;
 
     @Override
     public String getName() {
@@ -36,44 +34,24 @@ public class HilbertCurveStrategy implements Strategy {
     }
 
     /**
-     * Returns dataset in hilbert ordering
+     * Returns the hilbert keys of the positions, quantized to a grid over the
+     * bounding box of the whole dataset
      *
      * @param unsorted dataset
-     * @return sorted dataset
+     * @return the key function
      */
     @Override
-    public DataPoint[][] getOrderedValues(DataPoint[][] unsorted) {
-        DataPoint[][] result = new DataPoint[unsorted.length][unsorted[0].length];
-
-        for (int x = 0; x < unsorted.length; x++) {
-
-            //idx is an array of the indexes 
-            Integer[] idx = new Integer[unsorted[x].length];
-            //array to save the z-ordering numbers
-            long hilbertValues[] = new long[unsorted[x].length];
-
-            //calculate the z-ordering numbers
-            for (int y = 0; y < unsorted[x].length; y++) {
-                idx[y] = y;
-                hilbertValues[y] = encode((int) unsorted[x][y].getX(), (int) unsorted[x][y].getY(), this.hilbertOrder);
-            }
-
-            //sort the index array with comparing the zValues array values 
-            Arrays.sort(idx, new Comparator<Integer>() {
-                @Override
-                public int compare(final Integer o1, final Integer o2) {
-                    return Long.compare(hilbertValues[o1], hilbertValues[o2]);
-                    
-                }
-            });
+    public KeyFunction keyFunction(DataPoint[][] unsorted) {
+        GridQuantizer quantizer = GridQuantizer.forFrames(unsorted, 0, unsorted.length, hilbertOrder);
+        return (frame, keys) -> System.arraycopy(frame.hilbertKeys(quantizer), 0, keys, 0, frame.size());
+    }
 
-            //sort the result set after the z-ordering 
-            for (int y = 0; y < unsorted[x].length; y++) {
-                result[x][y] = unsorted[x][idx[y]];
-//                System.out.print(hilbertValues[idx[y]] + " ");
-            }
-        }
-        return result;
+    /**
+     * All frames are ordered again when appended frames grow the grid
+     */
+    @Override
+    public int firstChangedFrame(DataPoint[][] data, int orderedFrames) {
+        return GridQuantizer.changesWith(data, orderedFrames, hilbertOrder) ? 0 : orderedFrames;
     }
 
     /**
@@ -88,7 +66,10 @@ public class HilbertCurveStrategy implements Strategy {
      * @param r resolution of Hilbert curve (grid will have Math.pow(2,r) rows
      * and cols)
      * @return Hilbert order
+     * @deprecated only valid up to r = 15 and for non-negative cells, kept as
+     * reference for {@link HilbertKeys#encode(long, long, int)}
      */
+    @Deprecated
     public int encode(int x, int y, int r) {
 
         int mask = (1 << r) - 1;
@@ -139,12 +120,13 @@ public class HilbertCurveStrategy implements Strategy {
     }
 
     /**
-     * Set the hilbert order value
+     * Set the hilbert order value, the number of bits per axis the positions
+     * are quantized to. Clamped to 1..32.
      *
      * @param value new hilbert order value
      */
     public void setHilbertOrder(int value) {
-        this.hilbertOrder = value;
+        this.hilbertOrder = Math.max(1, Math.min(GridQuantizer.MAX_BITS, value));
     }
 
 }
@@ -0,0 +1,95 @@
+package dbvis.motionrugs.strategies;
+
+/**
+ * Table-driven Hilbert curve encoder for grid cells of up to 32 bits per axis.
+ *
+ * The curve is walked with the usual four-state machine (axis swap and
+ * reflection), but instead of one bit per axis per step, a lookup table maps
+ * the current state and four bits of each axis to eight key bits and the
+ * following state. Keys are 64 bit and must be compared unsigned.
+ */
+public final class HilbertKeys {
+
+    private static final int STEP_BITS = 4;
+    private static final int SWAP = 2;
+    private static final int FLIP = 1;
+
+    // LUT[state << 8 | xNibble << 4 | yNibble] = keyByte << 2 | nextState
+    private static final char[] LUT = buildTable();
+
+    private HilbertKeys() {
+    }
+
+    /**
+     * Encodes a grid cell
+     *
+     * @param x cell column, between 0 and 2^bits - 1
+     * @param y cell row, between 0 and 2^bits - 1
+     * @param bits bits per axis, at most 32
+     * @return the position of the cell along the Hilbert curve (unsigned)
+     */
+    public static long encode(long x, long y, int bits) {
+        int state = 0;
+        long key = 0;
+        for (int shift = ((bits + STEP_BITS - 1) / STEP_BITS - 1) * STEP_BITS; shift >= 0; shift -= STEP_BITS) {
+            int entry = LUT[(state << 8) | (int) ((x >>> shift) & 0xF) << 4 | (int) ((y >>> shift) & 0xF)];
+            key = (key << 8) | (entry >>> 2);
+            state = entry & 3;
+        }
+        return key;
+    }
+
+    /**
+     * Encodes the quantized position of every point
+     *
+     * @param xs x coordinates
+     * @param ys y coordinates
+     * @param n number of points
+     * @param quantizer grid the points are mapped onto
+     * @param keys receives the key of each point
+     */
+    public static void encode(double[] xs, double[] ys, int n, GridQuantizer quantizer, long[] keys) {
+        int bits = quantizer.getBits();
+        for (int i = 0; i < n; i++) {
+            keys[i] = encode(quantizer.quantizeX(xs[i]), quantizer.quantizeY(ys[i]), bits);
+        }
+    }
+
+    /**
+     * Runs the one bit per step state machine over every state and pair of
+     * nibbles.
+     */
+    private static char[] buildTable() {
+        char[] table = new char[4 << 8];
+        for (int start = 0; start < 4; start++) {
+            for (int xn = 0; xn < 16; xn++) {
+                for (int yn = 0; yn < 16; yn++) {
+                    int state = start;
+                    int key = 0;
+                    for (int b = STEP_BITS - 1; b >= 0; b--) {
+                        int rx = (xn >>> b) & 1;
+                        int ry = (yn >>> b) & 1;
+                        if ((state & SWAP) != 0) {
+                            int t = rx;
+                            rx = ry;
+                            ry = t;
+                        }
+                        if ((state & FLIP) != 0) {
+                            rx ^= 1;
+                            ry ^= 1;
+                        }
+                        key = (key << 2) | ((3 * rx) ^ ry);
+                        if (ry == 0) {
+                            state ^= SWAP;
+                            if (rx == 1) {
+                                state ^= FLIP;
+                            }
+                        }
+                    }
+                    table[(start << 8) | (xn << 4) | yn] = (char) ((key << 2) | state);
+                }
+            }
+        }
+        return table;
+    }
+}
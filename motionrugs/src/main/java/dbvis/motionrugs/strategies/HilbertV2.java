@@ -1,180 +1,265 @@
 package dbvis.motionrugs.strategies;
 
 import dbvis.motionrugs.data.DataPoint;
-import java.util.Arrays;
-import java.util.Comparator;
+import dbvis.motionrugs.data.FrameSummaries;
+import java.util.stream.IntStream;
 
 /**
  * Hilbert curve ordering strategy with dynamic starting corner adjustment
+ *
+ * Le coin de départ de chaque frame est d'abord calculé séquentiellement (piste
+ * de coins) à partir de la série des centroïdes, puis les frames sont triées
+ * indépendamment et en parallèle. Le résultat ne dépend que de la séquence de
+ * frames, pas de l'historique des appels.
  */
-public class HilbertV2 implements Strategy {
+public class HilbertV2 implements FrameStrategy {
 
-    private int hilbertOrder = 2;
-    private int currentCorner = 0; // 0: bottom-left, 1: top-left, 2: bottom-right, 3: top-right
-    private int framesSinceLastChange = Integer.MAX_VALUE; // Compteur pour limiter les changements
+    private int hilbertOrder = 16;
     private static final int MIN_FRAMES_BETWEEN_CHANGES = 10; // Minimum de frames avant un nouveau changement
-    private double lastAngle = 0.0; // Dernier angle de direction du swarm
     private static final double ANGLE_THRESHOLD = Math.PI / 4; // Seuil pour détecter un virage (45 degrés)
 
+    // État du coin sauvegardé à la fin du dernier appel, pour reprendre sans
+    // recalculer, et le dataset dont il provient
+    private CornerState resumeState = CornerState.INITIAL;
+    private int resumeFrame = 0;
+    private DatasetKey resumeKey;
+
+    /**
+     * État de la sélection du coin de départ, valable avant une frame donnée
+     */
+    static final class CornerState {
+
+        static final CornerState INITIAL = new CornerState(0, 0.0, Integer.MAX_VALUE);
+
+        final int corner; // 0: bottom-left, 1: top-left, 2: bottom-right, 3: top-right
+        final double lastAngle; // Dernier angle de direction du swarm
+        final int framesSinceLastChange; // Compteur pour limiter les changements
+
+        CornerState(int corner, double lastAngle, int framesSinceLastChange) {
+            this.corner = corner;
+            this.lastAngle = lastAngle;
+            this.framesSinceLastChange = framesSinceLastChange;
+        }
+    }
+
     @Override
     public String getName() {
-        return "Hilbert curve";
+        return "HilbertV2";
     }
 
     /**
-     * Returns dataset in Hilbert ordering with dynamic starting corner
+     * Stores the frames of the given range in Hilbert ordering with dynamic
+     * starting corner. The corner of each frame only depends on the frames
+     * before it; a range directly following the previous call on the same
+     * dataset resumes from the saved corner state instead of replaying the
+     * history.
      *
      * @param unsorted dataset
-     * @return sorted dataset
+     * @param fromFrame first frame to order
+     * @param toFrame frame after the last frame to order
+     * @param result target for the sorted frames
      */
     @Override
-    public DataPoint[][] getOrderedValues(DataPoint[][] unsorted) {
-        DataPoint[][] result = new DataPoint[unsorted.length][unsorted[0].length];
+    public void orderFrames(DataPoint[][] unsorted, int fromFrame, int toFrame, DataPoint[][] result) {
+        orderRange(unsorted, fromFrame, toFrame, result, null);
+    }
 
-        for (int x = 0; x < unsorted.length; x++) {
-            // Détection de virage pour la frame x
-            if (x > 0) {
-                updateStartingCorner(unsorted, x);
-            }
+    @Override
+    public void orderFrames(DataPoint[][] unsorted, int fromFrame, int toFrame, DataPoint[][] result, RankIndex ranks) {
+        orderRange(unsorted, fromFrame, toFrame, result, ranks);
+    }
 
-            Integer[] idx = new Integer[unsorted[x].length];
-            long[] hilbertValues = new long[unsorted[x].length];
+    private void orderRange(DataPoint[][] unsorted, int fromFrame, int toFrame, DataPoint[][] result, RankIndex ranks) {
+        CornerState start = startState(unsorted, fromFrame);
 
-            // Appliquer la transformation des coordonnées selon le coin de départ
-            for (int y = 0; y < unsorted[x].length; y++) {
-                idx[y] = y;
-                int[] transformed = transformCoordinates((int) unsorted[x][y].getX(), (int) unsorted[x][y].getY(), hilbertOrder);
-                hilbertValues[y] = encode(transformed[0], transformed[1], hilbertOrder);
-            }
+        int[] corners = new int[toFrame - fromFrame];
+        CornerState end = computeCornerTrack(unsorted, fromFrame, toFrame, start, corners);
+        saveState(end, toFrame, DatasetKey.of(unsorted));
+
+        // Grille sur la boîte englobante du dataset complet
+        GridQuantizer quantizer = GridQuantizer.forFrames(unsorted, 0, unsorted.length, hilbertOrder);
 
-            // Trier selon l'ordre de Hilbert
-            Arrays.sort(idx, new Comparator<Integer>() {
-                @Override
-                public int compare(final Integer o1, final Integer o2) {
-                    return Long.compare(hilbertValues[o1], hilbertValues[o2]);
-                }
-            });
-
-            // Construire le résultat
-            for (int y = 0; y < unsorted[x].length; y++) {
-                result[x][y] = unsorted[x][idx[y]];
+        if (ranks != null) {
+            // Réserver la place avant d'écrire les rangs en parallèle
+            int movers = 0;
+            for (int x = fromFrame; x < toFrame; x++) {
+                movers = Math.max(movers, unsorted[x].length);
             }
+            ranks.ensureCapacity(toFrame, movers);
         }
-        framesSinceLastChange++;
-        return result;
+
+        // Les frames sont indépendantes une fois les coins connus
+        IntStream.range(fromFrame, toFrame).parallel().forEach(x -> {
+            FrameContext frame = new FrameContext(unsorted);
+            frame.load(x);
+            int[] perm = new int[frame.size()];
+            sortFrame(frame, corners[x - fromFrame], quantizer, perm);
+            result[x] = frame.permute(perm);
+            if (ranks != null) {
+                ranks.record(x, perm, frame.size());
+            }
+        });
     }
 
     /**
-     * Détecte un virage et met à jour le coin de départ si nécessaire
+     * Ordonne les frames une par une en faisant avancer l'état du coin au fil
+     * des frames
      */
-    private void updateStartingCorner(DataPoint[][] unsorted, int frame) {
-        if (framesSinceLastChange < MIN_FRAMES_BETWEEN_CHANGES) {
-            return; // Ne pas changer si le dernier changement est trop récent
-        }
+    @Override
+    public FrameOrderer orderer(DataPoint[][] unsorted, int fromFrame) {
+        CornerState start = startState(unsorted, fromFrame);
+        GridQuantizer quantizer = GridQuantizer.forFrames(unsorted, 0, unsorted.length, hilbertOrder);
+        FrameSummaries summaries = FrameSummaries.of(unsorted);
+        DatasetKey key = DatasetKey.of(unsorted);
 
-        // Calculer le centroïde et le déplacement
-        double centroidX = 0.0, centroidY = 0.0;
-        double prevCentroidX = 0.0, prevCentroidY = 0.0;
-        int count = unsorted[frame].length;
+        return new FrameOrderer() {
+            private CornerState state = start;
 
-        for (int y = 0; y < count; y++) {
-            centroidX += unsorted[frame][y].getX();
-            centroidY += unsorted[frame][y].getY();
-            prevCentroidX += unsorted[frame - 1][y].getX();
-            prevCentroidY += unsorted[frame - 1][y].getY();
-        }
-        centroidX /= count;
-        centroidY /= count;
-        prevCentroidX /= count;
-        prevCentroidY /= count;
-
-        // Calculer la direction du déplacement
-        double dx = centroidX - prevCentroidX;
-        double dy = centroidY - prevCentroidY;
-        double angle = Math.atan2(dy, dx);
-
-        // Vérifier si l'angle a changé significativement
-        if (Math.abs(angle - lastAngle) > ANGLE_THRESHOLD) {
-            // Déterminer le nouveau coin en fonction de la direction
-            if (angle >= -Math.PI / 4 && angle < Math.PI / 4) {
-                currentCorner = 2; // Vers la droite -> bas-droite
-            } else if (angle >= Math.PI / 4 && angle < 3 * Math.PI / 4) {
-                currentCorner = 3; // Vers le haut -> haut-droite
-            } else if (angle >= 3 * Math.PI / 4 || angle < -3 * Math.PI / 4) {
-                currentCorner = 1; // Vers la gauche -> haut-gauche
-            } else {
-                currentCorner = 0; // Vers le bas -> bas-gauche
+            @Override
+            public void order(FrameContext frame, int[] perm) {
+                int x = frame.getFrameIndex();
+                state = advance(summaries, x, state);
+                saveState(state, x + 1, key);
+                sortFrame(frame, state.corner, quantizer, perm);
             }
-            framesSinceLastChange = 0; // Réinitialiser le compteur
-            lastAngle = angle;
+        };
+    }
+
+    /**
+     * Toutes les frames sont réordonnées quand les frames ajoutées agrandissent
+     * la grille
+     */
+    @Override
+    public int firstChangedFrame(DataPoint[][] unsorted, int orderedFrames) {
+        return GridQuantizer.changesWith(unsorted, orderedFrames, hilbertOrder) ? 0 : orderedFrames;
+    }
+
+    /**
+     * Retourne l'état valable avant fromFrame, repris du dernier appel s'il
+     * s'arrêtait à fromFrame sur le même dataset
+     */
+    private synchronized CornerState startState(DataPoint[][] unsorted, int fromFrame) {
+        if (fromFrame == 0) {
+            return CornerState.INITIAL;
         }
+        if (fromFrame == resumeFrame && resumeKey != null && resumeKey.matches(unsorted)) {
+            return resumeState;
+        }
+        // Rejouer la piste depuis le début de la séquence
+        CornerState start = CornerState.INITIAL;
+        if (fromFrame > 0) {
+            start = computeCornerTrack(unsorted, 0, fromFrame, start, new int[fromFrame]);
+        }
+        return start;
+    }
+
+    private synchronized void saveState(CornerState state, int frame, DatasetKey key) {
+        resumeState = state;
+        resumeFrame = frame;
+        resumeKey = key;
     }
 
     /**
-     * Transforme les coordonnées en fonction du coin de départ
+     * Calcule le coin de départ de chaque frame de la plage, à partir d'un
+     * état valable avant fromFrame.
+     *
+     * @param unsorted dataset
+     * @param fromFrame première frame
+     * @param toFrame frame après la dernière
+     * @param start état avant fromFrame
+     * @param corners reçoit le coin de chaque frame (index relatif à fromFrame)
+     * @return l'état après la dernière frame
      */
-    private int[] transformCoordinates(int x, int y, int order) {
-        int maxCoord = (1 << order) - 1; // Taille maximale de la grille
-        switch (currentCorner) {
-            case 0: // Bas-gauche (défaut)
-                return new int[]{x, y};
-            case 1: // Haut-gauche
-                return new int[]{x, maxCoord - y}; // Réflexion verticale
-            case 2: // Bas-droite
-                return new int[]{maxCoord - x, y}; // Réflexion horizontale
-            case 3: // Haut-droite
-                return new int[]{maxCoord - x, maxCoord - y}; // Réflexion horizontale et verticale
-            default:
-                return new int[]{x, y};
+    static CornerState computeCornerTrack(DataPoint[][] unsorted, int fromFrame, int toFrame, CornerState start, int[] corners) {
+        FrameSummaries summaries = FrameSummaries.of(unsorted);
+        CornerState state = start;
+        for (int x = fromFrame; x < toFrame; x++) {
+            state = advance(summaries, x, state);
+            corners[x - fromFrame] = state.corner;
         }
+        return state;
     }
 
     /**
-     * Encode les coordonnées en valeur de Hilbert
+     * Fait avancer l'état d'une frame : le coin de l'état retourné est celui
+     * de la frame x
      */
-    public int encode(int x, int y, int r) {
-        int mask = (1 << r) - 1;
-        int hodd = 0;
-        int heven = x ^ y;
-        int notx = ~x & mask;
-        int noty = ~y & mask;
-        int temp = notx ^ y;
-
-        int v0 = 0, v1 = 0;
-        for (int k = 1; k < r; k++) {
-            v1 = ((v1 & heven) | ((v0 ^ noty) & temp)) >> 1;
-            v0 = ((v0 & (v1 ^ notx)) | (~v0 & (v1 ^ noty))) >> 1;
+    static CornerState advance(FrameSummaries summaries, int x, CornerState state) {
+        int currentCorner = state.corner;
+        double lastAngle = state.lastAngle;
+        int framesSinceLastChange = state.framesSinceLastChange;
+
+        // Détection de virage pour la frame x
+        if (x > 0 && framesSinceLastChange >= MIN_FRAMES_BETWEEN_CHANGES) {
+            // Calculer la direction du déplacement du centroïde
+            double dx = summaries.getCentroidX(x) - summaries.getCentroidX(x - 1);
+            double dy = summaries.getCentroidY(x) - summaries.getCentroidY(x - 1);
+            double angle = Math.atan2(dy, dx);
+
+            // Vérifier si l'angle a changé significativement
+            if (Math.abs(angle - lastAngle) > ANGLE_THRESHOLD) {
+                currentCorner = cornerForAngle(angle);
+                framesSinceLastChange = 0; // Réinitialiser le compteur
+                lastAngle = angle;
+            }
+        }
+        if (framesSinceLastChange < Integer.MAX_VALUE) {
+            framesSinceLastChange++;
         }
-        hodd = (~v0 & (v1 ^ x)) | (v0 & (v1 ^ noty));
+        return new CornerState(currentCorner, lastAngle, framesSinceLastChange);
+    }
 
-        return interleaveBits(hodd, heven);
+    /**
+     * Déterminer le nouveau coin en fonction de la direction
+     */
+    private static int cornerForAngle(double angle) {
+        if (angle >= -Math.PI / 4 && angle < Math.PI / 4) {
+            return 2; // Vers la droite -> bas-droite
+        } else if (angle >= Math.PI / 4 && angle < 3 * Math.PI / 4) {
+            return 3; // Vers le haut -> haut-droite
+        } else if (angle >= 3 * Math.PI / 4 || angle < -3 * Math.PI / 4) {
+            return 1; // Vers la gauche -> haut-gauche
+        } else {
+            return 0; // Vers le bas -> bas-gauche
+        }
     }
 
     /**
-     * Interleave les bits de deux valeurs
+     * Trie une frame selon l'ordre de Hilbert pour le coin de départ donné
      */
-    private int interleaveBits(int odd, int even) {
-        int val = 0;
-        int max = Math.max(odd, even);
-        int n = 0;
-        while (max > 0) {
-            n++;
-            max >>= 1;
+    private static void sortFrame(FrameContext frame, int corner, GridQuantizer quantizer, int[] perm) {
+        int n = frame.size();
+        long[] keys = frame.keyScratch();
+        if (corner == 0) {
+            // Sans réflexion, les clés partagées du contexte conviennent
+            System.arraycopy(frame.hilbertKeys(quantizer), 0, keys, 0, n);
+        } else {
+            double[] xs = frame.xs();
+            double[] ys = frame.ys();
+            long maxCoord = quantizer.getMaxCell();
+            // Réflexions selon le coin de départ
+            boolean flipX = corner == 2 || corner == 3;
+            boolean flipY = corner == 1 || corner == 3;
+
+            // Appliquer la transformation des coordonnées quantifiées selon le coin de départ
+            for (int y = 0; y < n; y++) {
+                long qx = quantizer.quantizeX(xs[y]);
+                long qy = quantizer.quantizeY(ys[y]);
+                keys[y] = HilbertKeys.encode(flipX ? maxCoord - qx : qx, flipY ? maxCoord - qy : qy, quantizer.getBits());
+            }
         }
 
-        for (int i = 0; i < n; i++) {
-            int bitMask = 1 << i;
-            int a = (even & bitMask) > 0 ? (1 << (2 * i)) : 0;
-            int b = (odd & bitMask) > 0 ? (1 << (2 * i + 1)) : 0;
-            val += a + b;
+        // Trier selon l'ordre de Hilbert (tri stable, clés non signées)
+        for (int y = 0; y < n; y++) {
+            perm[y] = y;
         }
-        return val;
+        frame.getSorter().radixSort(keys, perm, n);
     }
 
     /**
-     * Définit l'ordre de Hilbert
+     * Définit l'ordre de Hilbert (bits par axe de la grille, entre 1 et 32)
      */
     public void setHilbertOrder(int value) {
-        this.hilbertOrder = value;
+        this.hilbertOrder = Math.max(1, Math.min(GridQuantizer.MAX_BITS, value));
     }
-}
\ No newline at end of file
+}
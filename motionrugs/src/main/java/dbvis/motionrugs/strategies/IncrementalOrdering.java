@@ -0,0 +1,123 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+import java.util.Arrays;
+
+/**
+ * Keeps the ordered frames of a growing dataset. Each update only orders the
+ * frames appended since the previous update, the already ordered history is
+ * reused as is, unless the strategy reports that the appended frames change
+ * the order of earlier ones (see {@link Strategy#firstChangedFrame}).
+ * Strategies that do not declare themselves incremental are run on all frames
+ * on every update instead. The ranks of the movers are only recorded once
+ * requested with {@link #setRecordingRanks}.
+ */
+public class IncrementalOrdering {
+
+    private final Strategy strategy;
+    private final StrategyCapabilities capabilities;
+    private DataPoint[][] ordered = new DataPoint[0][];
+    private RankIndex ranks;
+    private int lastUpdateFrom;
+
+    /**
+     * @param strategy the strategy used to order new frames
+     */
+    public IncrementalOrdering(Strategy strategy) {
+        this(strategy, new StrategyCapabilities(false, true, true, StrategyCapabilities.Complexity.LINEARITHMIC));
+    }
+
+    /**
+     * @param strategy the strategy used to order new frames
+     * @param capabilities what the strategy declares about itself
+     */
+    public IncrementalOrdering(Strategy strategy, StrategyCapabilities capabilities) {
+        this.strategy = strategy;
+        this.capabilities = capabilities;
+    }
+
+    /**
+     * Orders the frames of data that have not been ordered yet. If data has
+     * fewer frames than already ordered, the dataset is assumed to have been
+     * replaced and is ordered from scratch.
+     *
+     * @param data the current dataset, the previously seen frames followed by
+     * the newly appended ones
+     * @return the ordered dataset, one ordered frame per frame of data
+     */
+    public DataPoint[][] update(DataPoint[][] data) {
+        int from = ordered.length;
+        if (data.length < from || !capabilities.isIncremental()) {
+            from = 0;
+            if (ranks != null) {
+                ranks.clear();
+            }
+        } else if (from > 0 && from < data.length) {
+            from = Math.max(0, Math.min(from, strategy.firstChangedFrame(data, from)));
+        }
+        if (data.length != ordered.length) {
+            ordered = Arrays.copyOf(ordered, data.length);
+        }
+        if (from < data.length) {
+            OrderingEngine.orderRange(strategy, capabilities, data, from, data.length, ordered, ranks);
+        }
+        lastUpdateFrom = from;
+        return ordered;
+    }
+
+    /**
+     * Drops the ordered history, the next update orders all frames.
+     */
+    public void reset() {
+        ordered = new DataPoint[0][];
+        if (ranks != null) {
+            ranks.clear();
+        }
+        lastUpdateFrom = 0;
+    }
+
+    /**
+     * Starts or stops recording the rank of each mover. Starting drops the
+     * ordered history, so that the next update records all frames.
+     *
+     * @param recording true to record the ranks from the next update on
+     */
+    public void setRecordingRanks(boolean recording) {
+        if (recording && ranks == null) {
+            ranks = new RankIndex();
+            reset();
+        } else if (!recording) {
+            ranks = null;
+        }
+    }
+
+    /**
+     * @return the first frame ordered by the last update, the frames before
+     * it kept their order
+     */
+    public int getLastUpdateFrom() {
+        return lastUpdateFrom;
+    }
+
+    /**
+     * @return the number of frames ordered so far
+     */
+    public int getOrderedFrameCount() {
+        return ordered.length;
+    }
+
+    /**
+     * @return the rank of each mover in the ordered frames, null if the
+     * ranks are not recorded
+     */
+    public RankIndex getRankIndex() {
+        return ranks;
+    }
+
+    /**
+     * @return the strategy used to order new frames
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+}
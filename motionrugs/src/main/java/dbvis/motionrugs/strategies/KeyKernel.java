@@ -0,0 +1,39 @@
+package dbvis.motionrugs.strategies;
+
+/**
+ * Computes space-filling curve keys for whole frames over primitive coordinate
+ * arrays. All kernels quantize with the given {@link GridQuantizer} and return
+ * exactly the keys of {@link HilbertKeys} and {@link MortonKeys}, they only
+ * differ in speed.
+ *
+ * @see KeyKernels#preferred()
+ */
+public interface KeyKernel {
+
+    /**
+     * @return a short name of the kernel, e.g. for logging
+     */
+    public String getName();
+
+    /**
+     * Computes the Hilbert key of every point
+     *
+     * @param xs x coordinates
+     * @param ys y coordinates
+     * @param n number of points
+     * @param quantizer grid the points are mapped onto
+     * @param keys receives the key of each point (unsigned)
+     */
+    public void hilbertKeys(double[] xs, double[] ys, int n, GridQuantizer quantizer, long[] keys);
+
+    /**
+     * Computes the z-order key of every point
+     *
+     * @param xs x coordinates
+     * @param ys y coordinates
+     * @param n number of points
+     * @param quantizer grid the points are mapped onto
+     * @param keys receives the key of each point (unsigned)
+     */
+    public void mortonKeys(double[] xs, double[] ys, int n, GridQuantizer quantizer, long[] keys);
+}
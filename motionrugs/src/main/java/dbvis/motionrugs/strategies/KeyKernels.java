@@ -0,0 +1,69 @@
+package dbvis.motionrugs.strategies;
+
+/**
+ * Selects the key kernel used by the curve strategies.
+ *
+ * The SIMD kernel is built from src/main/java-vector when compiling on JDK 17
+ * or newer and needs the incubating Vector API at runtime, i.e. the
+ * application has to be started with
+ * <pre>
+ * java --add-modules jdk.incubator.vector ...
+ * </pre>
+ * Without the module, or with -Dmotionrugs.simd=false, the scalar kernel is
+ * used.
+ */
+public final class KeyKernels {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL = "dbvis.motionrugs.strategies.VectorKeyKernel";
+
+    private static final KeyKernel SCALAR = new KeyKernel() {
+        @Override
+        public String getName() {
+            return "scalar";
+        }
+
+        @Override
+        public void hilbertKeys(double[] xs, double[] ys, int n, GridQuantizer quantizer, long[] keys) {
+            HilbertKeys.encode(xs, ys, n, quantizer, keys);
+        }
+
+        @Override
+        public void mortonKeys(double[] xs, double[] ys, int n, GridQuantizer quantizer, long[] keys) {
+            MortonKeys.encode(xs, ys, n, quantizer, keys);
+        }
+    };
+
+    private static final KeyKernel PREFERRED = select();
+
+    private KeyKernels() {
+    }
+
+    /**
+     * @return the SIMD kernel if the Vector API is available, else the scalar
+     * kernel
+     */
+    public static KeyKernel preferred() {
+        return PREFERRED;
+    }
+
+    /**
+     * @return the scalar kernel
+     */
+    public static KeyKernel scalar() {
+        return SCALAR;
+    }
+
+    private static KeyKernel select() {
+        if (!Boolean.parseBoolean(System.getProperty("motionrugs.simd", "true"))
+                || !ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            return SCALAR;
+        }
+        try {
+            return (KeyKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // built without the vector sources or on an incompatible JDK
+            return SCALAR;
+        }
+    }
+}
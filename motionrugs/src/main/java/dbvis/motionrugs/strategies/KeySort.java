@@ -0,0 +1,171 @@
+package dbvis.motionrugs.strategies;
+
+import java.util.Arrays;
+
+/**
+ * Sorts a permutation by unsigned 64-bit keys, moving keys and permutation
+ * together. All sorts are stable. Scratch buffers are kept by the instance and
+ * only grow, so an instance should be reused across frames but not shared
+ * between threads.
+ */
+public final class KeySort {
+
+    private static final int DIGIT_BITS = 8;
+    private static final int RADIX = 1 << DIGIT_BITS;
+    private static final int PASSES = Long.SIZE / DIGIT_BITS;
+
+    private long[] keyBuffer = new long[0];
+    private int[] permBuffer = new int[0];
+    private int[] runBounds = new int[0];
+    private final int[] counts = new int[PASSES * RADIX];
+
+    /**
+     * Least significant digit radix sort, O(n) with up to eight passes. Passes
+     * over bytes that are equal for all keys are skipped.
+     *
+     * @param keys the keys, sorted on return
+     * @param perm the permutation, reordered together with the keys
+     * @param n number of entries
+     */
+    public void radixSort(long[] keys, int[] perm, int n) {
+        if (n < 2) {
+            return;
+        }
+        ensureCapacity(n);
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < n; i++) {
+            long key = keys[i];
+            for (int pass = 0; pass < PASSES; pass++) {
+                counts[pass * RADIX + (int) ((key >>> (pass * DIGIT_BITS)) & (RADIX - 1))]++;
+            }
+        }
+
+        long[] srcKeys = keys, dstKeys = keyBuffer;
+        int[] srcPerm = perm, dstPerm = permBuffer;
+        for (int pass = 0; pass < PASSES; pass++) {
+            int offset = pass * RADIX;
+            int shift = pass * DIGIT_BITS;
+            if (counts[offset + (int) ((srcKeys[0] >>> shift) & (RADIX - 1))] == n) {
+                continue;
+            }
+            int sum = 0;
+            for (int d = 0; d < RADIX; d++) {
+                int c = counts[offset + d];
+                counts[offset + d] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int slot = counts[offset + (int) ((srcKeys[i] >>> shift) & (RADIX - 1))]++;
+                dstKeys[slot] = srcKeys[i];
+                dstPerm[slot] = srcPerm[i];
+            }
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            int[] swapPerm = srcPerm;
+            srcPerm = dstPerm;
+            dstPerm = swapPerm;
+        }
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, n);
+            System.arraycopy(srcPerm, 0, perm, 0, n);
+        }
+    }
+
+    /**
+     * Natural merge sort: splits the entries into ascending runs and merges
+     * neighbouring runs until one is left. O(n log r) for r runs, so close to
+     * linear on nearly sorted input.
+     *
+     * @param keys the keys, sorted on return
+     * @param perm the permutation, reordered together with the keys
+     * @param n number of entries
+     */
+    public void mergeRuns(long[] keys, int[] perm, int n) {
+        if (n < 2) {
+            return;
+        }
+        ensureCapacity(n);
+        int runs = 0;
+        runBounds[runs++] = 0;
+        for (int i = 1; i < n; i++) {
+            if (Long.compareUnsigned(keys[i - 1], keys[i]) > 0) {
+                runBounds[runs++] = i;
+            }
+        }
+        runBounds[runs] = n;
+
+        long[] srcKeys = keys, dstKeys = keyBuffer;
+        int[] srcPerm = perm, dstPerm = permBuffer;
+        while (runs > 1) {
+            int merged = 0;
+            for (int r = 0; r < runs; r += 2) {
+                int lo = runBounds[r];
+                int mid = runBounds[Math.min(r + 1, runs)];
+                int hi = runBounds[Math.min(r + 2, runs)];
+                merge(srcKeys, srcPerm, dstKeys, dstPerm, lo, mid, hi);
+                runBounds[merged++] = lo;
+            }
+            runBounds[merged] = n;
+            runs = merged;
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            int[] swapPerm = srcPerm;
+            srcPerm = dstPerm;
+            dstPerm = swapPerm;
+        }
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, n);
+            System.arraycopy(srcPerm, 0, perm, 0, n);
+        }
+    }
+
+    /**
+     * Counts the ascending runs of the keys
+     *
+     * @param keys the keys
+     * @param n number of entries
+     * @return the number of runs, 1 for sorted input
+     */
+    public static int countRuns(long[] keys, int n) {
+        int runs = 1;
+        for (int i = 1; i < n; i++) {
+            if (Long.compareUnsigned(keys[i - 1], keys[i]) > 0) {
+                runs++;
+            }
+        }
+        return runs;
+    }
+
+    private static void merge(long[] srcKeys, int[] srcPerm, long[] dstKeys, int[] dstPerm, int lo, int mid, int hi) {
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi) {
+            if (Long.compareUnsigned(srcKeys[j], srcKeys[i]) < 0) {
+                dstKeys[k] = srcKeys[j];
+                dstPerm[k++] = srcPerm[j++];
+            } else {
+                dstKeys[k] = srcKeys[i];
+                dstPerm[k++] = srcPerm[i++];
+            }
+        }
+        while (i < mid) {
+            dstKeys[k] = srcKeys[i];
+            dstPerm[k++] = srcPerm[i++];
+        }
+        while (j < hi) {
+            dstKeys[k] = srcKeys[j];
+            dstPerm[k++] = srcPerm[j++];
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (keyBuffer.length < n) {
+            keyBuffer = new long[n];
+            permBuffer = new int[n];
+            runBounds = new int[n + 1];
+        } else if (runBounds.length < n + 1) {
+            runBounds = new int[n + 1];
+        }
+    }
+}
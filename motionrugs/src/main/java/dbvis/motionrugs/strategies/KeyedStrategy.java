@@ -0,0 +1,52 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+
+/**
+ * A strategy that orders the movers of each frame by one unsigned 64-bit key
+ * per mover, e.g. their position along a space-filling curve. Provides the
+ * ordering itself; implementations only define how the keys are computed.
+ */
+public interface KeyedStrategy extends FrameStrategy {
+
+    /**
+     * Computes the keys of the movers of a single frame. May keep scratch
+     * buffers, so one instance must not be used by several threads.
+     */
+    public interface KeyFunction {
+
+        /**
+         * @param frame the current frame
+         * @param keys receives the key of each mover, at least frame.size()
+         * long
+         */
+        public void computeKeys(FrameContext frame, long[] keys);
+    }
+
+    /**
+     * Creates the key function for frames of the given dataset, e.g. fixes
+     * the grid the positions are quantized to.
+     *
+     * @param data dataset, first dimension frames, second the movers
+     * @return the key function
+     */
+    public KeyFunction keyFunction(DataPoint[][] data);
+
+    /**
+     * Orders each frame by ascending key, ties keep the order of the movers
+     * in the frame.
+     */
+    @Override
+    public default FrameOrderer orderer(DataPoint[][] data, int fromFrame) {
+        KeyFunction keyFunction = keyFunction(data);
+        return (frame, perm) -> {
+            int n = frame.size();
+            long[] keys = frame.keyScratch();
+            keyFunction.computeKeys(frame, keys);
+            for (int y = 0; y < n; y++) {
+                perm[y] = y;
+            }
+            frame.getSorter().radixSort(keys, perm, n);
+        };
+    }
+}
@@ -0,0 +1,54 @@
+package dbvis.motionrugs.strategies;
+
+/**
+ * Morton (z-order) encoder for grid cells of up to 32 bits per axis. The bits
+ * of both axes are spread with shift-and-mask steps, without tables or
+ * branches, and interleaved into unsigned 64-bit keys (x on the even bits, y
+ * on the odd bits).
+ */
+public final class MortonKeys {
+
+    private MortonKeys() {
+    }
+
+    /**
+     * Encodes a grid cell
+     *
+     * @param x cell column, between 0 and 2^32 - 1
+     * @param y cell row, between 0 and 2^32 - 1
+     * @return the interleaved key (unsigned)
+     */
+    public static long encode(long x, long y) {
+        return spread(x) | (spread(y) << 1);
+    }
+
+    /**
+     * Encodes the quantized position of every point
+     *
+     * @param xs x coordinates
+     * @param ys y coordinates
+     * @param n number of points
+     * @param quantizer grid the points are mapped onto
+     * @param keys receives the key of each point
+     */
+    public static void encode(double[] xs, double[] ys, int n, GridQuantizer quantizer, long[] keys) {
+        for (int i = 0; i < n; i++) {
+            keys[i] = encode(quantizer.quantizeX(xs[i]), quantizer.quantizeY(ys[i]));
+        }
+    }
+
+    /**
+     * Moves bit i of the lower 32 bits of v to bit 2i.
+     *
+     * source: http://graphics.stanford.edu/~seander/bithacks.html#InterleaveBMN
+     */
+    static long spread(long v) {
+        v &= 0x00000000FFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+}
@@ -0,0 +1,143 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the strategies of a registry. How a strategy is run follows from its
+ * {@link StrategyCapabilities}: parallel-safe strategies order large ranges
+ * in chunks of frames on several threads, the chunk size chosen from the
+ * expected complexity so that each chunk is worth a task; incremental
+ * strategies extend a growing ordering by the appended frames only.
+ */
+public class OrderingEngine {
+
+    // minimal estimated work of a chunk, in per-mover steps
+    private static final long MIN_CHUNK_WORK = 1L << 20;
+
+    private final StrategyRegistry registry;
+
+    /**
+     * @param registry the available strategies
+     */
+    public OrderingEngine(StrategyRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @return the available strategies
+     */
+    public StrategyRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Orders the complete dataset with a new instance of a strategy
+     *
+     * @param strategyName name of the strategy
+     * @param data dataset, first dimension frames, second the movers
+     * @return the ordered dataset
+     */
+    public DataPoint[][] order(String strategyName, DataPoint[][] data) {
+        return order(strategyName, data, null);
+    }
+
+    /**
+     * Orders the complete dataset with a new instance of a strategy and
+     * records the rank of each mover
+     *
+     * @param strategyName name of the strategy
+     * @param data dataset, first dimension frames, second the movers
+     * @param ranks receives the ranks of the ordered frames, or null
+     * @return the ordered dataset
+     */
+    public DataPoint[][] order(String strategyName, DataPoint[][] data, RankIndex ranks) {
+        StrategyProvider provider = provider(strategyName);
+        DataPoint[][] result = new DataPoint[data.length][];
+        orderRange(provider.createStrategy(), provider.getCapabilities(), data, 0, data.length, result, ranks);
+        return result;
+    }
+
+    /**
+     * Creates a growing ordering with a new instance of a strategy
+     *
+     * @param strategyName name of the strategy
+     * @return the ordering, empty
+     */
+    public IncrementalOrdering incremental(String strategyName) {
+        StrategyProvider provider = provider(strategyName);
+        return new IncrementalOrdering(provider.createStrategy(), provider.getCapabilities());
+    }
+
+    private StrategyProvider provider(String strategyName) {
+        StrategyProvider provider = registry.getProvider(strategyName);
+        if (provider == null) {
+            throw new IllegalArgumentException("Unknown strategy " + strategyName);
+        }
+        return provider;
+    }
+
+    /**
+     * Orders a range of frames as the capabilities of the strategy allow
+     *
+     * @param strategy the strategy
+     * @param capabilities what the strategy declares about itself
+     * @param data dataset, first dimension frames, second the movers
+     * @param fromFrame first frame to order
+     * @param toFrame frame after the last frame to order
+     * @param into target array, at least toFrame long
+     * @param ranks receives the ranks of the ordered frames, or null
+     */
+    public static void orderRange(Strategy strategy, StrategyCapabilities capabilities, DataPoint[][] data,
+            int fromFrame, int toFrame, DataPoint[][] into, RankIndex ranks) {
+        int frames = toFrame - fromFrame;
+        int chunks = 1;
+        if (capabilities.isParallelSafe() && frames > 1) {
+            long work = frameWork(capabilities.getComplexity(), data[fromFrame].length);
+            long chunksWorthIt = Math.max(1, (long) frames * work / MIN_CHUNK_WORK);
+            chunks = (int) Math.min(Math.min(chunksWorthIt, 4L * ForkJoinPool.getCommonPoolParallelism()), frames);
+        }
+        if (chunks <= 1) {
+            orderChunk(strategy, data, fromFrame, toFrame, into, ranks);
+            return;
+        }
+
+        if (ranks != null) {
+            // the chunks record distinct frames, which needs the room up front
+            int movers = 0;
+            for (int x = fromFrame; x < toFrame; x++) {
+                movers = Math.max(movers, data[x].length);
+            }
+            ranks.ensureCapacity(toFrame, movers);
+        }
+        int chunkCount = chunks;
+        IntStream.range(0, chunkCount).parallel().forEach(c -> orderChunk(strategy, data,
+                fromFrame + (int) ((long) frames * c / chunkCount),
+                fromFrame + (int) ((long) frames * (c + 1) / chunkCount), into, ranks));
+    }
+
+    private static void orderChunk(Strategy strategy, DataPoint[][] data, int fromFrame, int toFrame,
+            DataPoint[][] into, RankIndex ranks) {
+        if (ranks == null) {
+            strategy.orderFrames(data, fromFrame, toFrame, into);
+        } else {
+            strategy.orderFrames(data, fromFrame, toFrame, into, ranks);
+        }
+    }
+
+    /**
+     * Estimates the work of ordering one frame of n movers
+     */
+    private static long frameWork(StrategyCapabilities.Complexity complexity, int n) {
+        long movers = Math.max(1, n);
+        switch (complexity) {
+            case LINEAR:
+                return movers;
+            case LINEARITHMIC:
+                return movers * (64 - Long.numberOfLeadingZeros(movers));
+            default:
+                return movers * movers;
+        }
+    }
+}
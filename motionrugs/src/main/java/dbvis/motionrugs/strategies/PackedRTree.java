@@ -0,0 +1,223 @@
+package dbvis.motionrugs.strategies;
+
+import java.util.Arrays;
+
+/**
+ * Static R-tree bulk loaded with Sort-Tile-Recursive (STR) packing and stored
+ * in flat primitive arrays.
+ *
+ * Each level is packed by sorting its entries by x, cutting them into
+ * vertical slices of about sqrt(nodes) nodes, sorting every slice by y and
+ * grouping runs of nodeCapacity entries into parent nodes. The parents are
+ * packed the same way until a single root remains. Coordinates are quantized
+ * to 31 bits over the bounding box of the points, so that a coordinate and the
+ * entry index fit into one long and every sort is a primitive sort.
+ *
+ * All buffers are kept between builds and only grow, rebuilding the tree for
+ * the next frame does not allocate once the largest frame has been seen.
+ * Instances are not thread-safe.
+ */
+public final class PackedRTree {
+
+    private static final int COORD_BITS = 31;
+
+    private final int nodeCapacity;
+
+    // entry boxes of the level currently being packed and of its parents
+    private long[] minX = new long[0], minY = new long[0], maxX = new long[0], maxY = new long[0];
+    private long[] parentMinX = new long[0], parentMinY = new long[0], parentMaxX = new long[0], parentMaxY = new long[0];
+    private long[] sortBuffer = new long[0];
+    private int[] expandBuffer = new int[0];
+
+    // levels[k] is the packed order of the entries of level k, level 0 being the points
+    private int[][] levels = new int[0][];
+    private int[] levelSizes = new int[0];
+    private int height;
+    private int size;
+
+    /**
+     * @param nodeCapacity maximum number of children per node, at least 2
+     */
+    public PackedRTree(int nodeCapacity) {
+        if (nodeCapacity < 2) {
+            throw new IllegalArgumentException("Node capacity must be at least 2 but was " + nodeCapacity);
+        }
+        this.nodeCapacity = nodeCapacity;
+    }
+
+    /**
+     * Bulk loads the tree with the given points, replacing the previous content
+     *
+     * @param xs x coordinates
+     * @param ys y coordinates
+     * @param n number of points
+     */
+    public void build(double[] xs, double[] ys, int n) {
+        size = n;
+        height = 0;
+        if (n == 0) {
+            return;
+        }
+        ensureEntryCapacity(n);
+
+        GridQuantizer quantizer = GridQuantizer.forPoints(xs, ys, n, COORD_BITS);
+        for (int i = 0; i < n; i++) {
+            minX[i] = maxX[i] = quantizer.quantizeX(xs[i]);
+            minY[i] = maxY[i] = quantizer.quantizeY(ys[i]);
+        }
+
+        int count = n;
+        while (true) {
+            int[] order = level(height, count);
+            pack(count, order);
+            height++;
+            if (count <= nodeCapacity) {
+                break;
+            }
+            count = groupParents(count, order);
+        }
+    }
+
+    /**
+     * Writes the points in the order their leaves are visited by a depth
+     * first traversal of the tree.
+     *
+     * @param out receives the point indices, at least size() long
+     */
+    public void leafOrder(int[] out) {
+        if (size == 0) {
+            return;
+        }
+        int top = height - 1;
+        int count = levelSizes[top];
+        System.arraycopy(levels[top], 0, out, 0, count);
+        int[] current = out;
+        int[] next = expandBuffer;
+        for (int k = top; k > 0; k--) {
+            int[] children = levels[k - 1];
+            int childCount = levelSizes[k - 1];
+            int written = 0;
+            for (int i = 0; i < count; i++) {
+                int from = current[i] * nodeCapacity;
+                int length = Math.min(nodeCapacity, childCount - from);
+                System.arraycopy(children, from, next, written, length);
+                written += length;
+            }
+            count = written;
+            int[] swap = current;
+            current = next;
+            next = swap;
+        }
+        if (current != out) {
+            System.arraycopy(current, 0, out, 0, count);
+        }
+    }
+
+    /**
+     * @return the number of points in the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of levels, including the level of the points
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sort-Tile-Recursive packing of the entries of one level
+     */
+    private void pack(int count, int[] order) {
+        int nodes = (count + nodeCapacity - 1) / nodeCapacity;
+        int slices = (int) Math.ceil(Math.sqrt(nodes));
+        int sliceSize = slices * nodeCapacity;
+
+        for (int i = 0; i < count; i++) {
+            sortBuffer[i] = ((minX[i] + maxX[i]) >>> 1) << 32 | i;
+        }
+        Arrays.sort(sortBuffer, 0, count);
+        for (int start = 0; start < count; start += sliceSize) {
+            int end = Math.min(start + sliceSize, count);
+            for (int k = start; k < end; k++) {
+                int i = (int) sortBuffer[k];
+                sortBuffer[k] = ((minY[i] + maxY[i]) >>> 1) << 32 | i;
+            }
+            Arrays.sort(sortBuffer, start, end);
+        }
+        for (int k = 0; k < count; k++) {
+            order[k] = (int) sortBuffer[k];
+        }
+    }
+
+    /**
+     * Computes the boxes of the parents of the packed entries and makes them
+     * the entries of the next level.
+     *
+     * @return the number of parents
+     */
+    private int groupParents(int count, int[] order) {
+        int parents = (count + nodeCapacity - 1) / nodeCapacity;
+        for (int p = 0; p < parents; p++) {
+            long pMinX = Long.MAX_VALUE, pMinY = Long.MAX_VALUE, pMaxX = Long.MIN_VALUE, pMaxY = Long.MIN_VALUE;
+            int end = Math.min((p + 1) * nodeCapacity, count);
+            for (int k = p * nodeCapacity; k < end; k++) {
+                int i = order[k];
+                pMinX = Math.min(pMinX, minX[i]);
+                pMinY = Math.min(pMinY, minY[i]);
+                pMaxX = Math.max(pMaxX, maxX[i]);
+                pMaxY = Math.max(pMaxY, maxY[i]);
+            }
+            parentMinX[p] = pMinX;
+            parentMinY[p] = pMinY;
+            parentMaxX[p] = pMaxX;
+            parentMaxY[p] = pMaxY;
+        }
+        long[] swap = minX;
+        minX = parentMinX;
+        parentMinX = swap;
+        swap = minY;
+        minY = parentMinY;
+        parentMinY = swap;
+        swap = maxX;
+        maxX = parentMaxX;
+        parentMaxX = swap;
+        swap = maxY;
+        maxY = parentMaxY;
+        parentMaxY = swap;
+        return parents;
+    }
+
+    /**
+     * Returns the order buffer of level k, grown to hold count entries
+     */
+    private int[] level(int k, int count) {
+        if (k >= levels.length) {
+            levels = Arrays.copyOf(levels, k + 1);
+            levelSizes = Arrays.copyOf(levelSizes, k + 1);
+        }
+        if (levels[k] == null || levels[k].length < count) {
+            levels[k] = new int[count];
+        }
+        levelSizes[k] = count;
+        return levels[k];
+    }
+
+    private void ensureEntryCapacity(int n) {
+        if (sortBuffer.length >= n) {
+            return;
+        }
+        minX = new long[n];
+        minY = new long[n];
+        maxX = new long[n];
+        maxY = new long[n];
+        parentMinX = new long[n];
+        parentMinY = new long[n];
+        parentMaxX = new long[n];
+        parentMaxY = new long[n];
+        sortBuffer = new long[n];
+        expandBuffer = new int[n];
+    }
+}
@@ -15,207 +15,133 @@
  */
 package dbvis.motionrugs.strategies;
 
-import java.awt.Point;
-import java.util.ArrayList;
-import java.util.Stack;
+import java.util.Arrays;
 
 /**
  * Create a Point QuadTree
  * Basic idea from: Algorithms, 4th Edition by Robert Sedgewick and Kevin Wayne
+ *
+ * Nodes live in parallel primitive arrays and refer to their children by
+ * index. Insertion and traversal are iterative, so degenerate input (e.g.
+ * points sorted along a line) cannot overflow the call stack. The storage is
+ * kept on {@link #reset()}, filling the tree again with at most as many points
+ * does not allocate.
  * 
  * @author Eren Cakmak, University of Konstanz <cakmak@dbvis.inf.uni-konstanz.de>
  * @author Juri Buchmüller, University of Konstanz <buchmueller@dbvis.inf.uni-konstanz.de>
  */
-public class PointQuadTree< T> {
-
-    private Node root;
+public class PointQuadTree {
 
-    // Node data type
-    private class Node {
+    private static final int NONE = -1;
+    // child slots, children of node i are stored at 4 * i + slot
+    private static final int NW = 0, NE = 1, SE = 2, SW = 3;
 
-        Point p;               // Point stores x and y 
-        Node NW, NE, SE, SW;   // four subtrees
-        T value;               // associated data
-
-        /**
-         * Constructor of the Node
-         *
-         * @param p Point
-         * @param value data element
-         */
-        public Node(Point p, T value) {
-            this.p = p;
-            this.value = value;
-        }
-    }
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private int[] values = new int[0];   // associated data
+    private int[] children = new int[0]; // four subtrees per node
+    private int[] stack = new int[0];
+    private int size;
 
     /**
-     * Insert point
-     *
-     * @param p Point
-     * @param value data element
+     * Removes all points, keeping the allocated storage
      */
-    public void insert(Point p, T value) {
-        root = insert(root, p, value);
+    public void reset() {
+        size = 0;
     }
 
     /**
-     * Helper method for insert. Inserts the element and return the root element
-     * Recursive call here
+     * Insert point
      *
-     * @param p Point
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
      * @param value data element
      */
-    private Node insert(Node node, Point p, T value) {
-        if (node == null) {
-            return new Node(p, value);
-        } else if ((p.x < node.p.x) && (p.y < node.p.y)) {
-            node.SW = insert(node.SW, p, value);
-        } else if ((p.x < node.p.x) && !(p.y < node.p.y)) {
-            node.NW = insert(node.NW, p, value);
-        } else if (!(p.x < node.p.x) && (p.y < node.p.y)) {
-            node.SE = insert(node.SE, p, value);
-        } else if (!(p.x < node.p.x) && !(p.y < node.p.y)) {
-            node.NE = insert(node.NE, p, value);
-        }
-        return node;
-    }
-
-    /**
-     * Inorder traversal of the nodes
-     *
-     * @return ArrayList of the elements T in inorder order
-     */
-    public ArrayList inorderTraversal() {
-        return inorderTraversal(root, new ArrayList<T>());
-    }
-
-    /**
-     * Helper method inorder traversal - recursive call here
-     *
-     * @param p Point
-     * @param list data element
-     */
-    private ArrayList inorderTraversal(Node node, ArrayList<T> list) {
-        if (node.NW != null) {
-            inorderTraversal(node.NW, list);
-        }
-        if (node.NE != null) {
-            inorderTraversal(node.NE, list);
-        }
-
-        if (node != null && node.value != null) {
-            list.add(node.value);
-        }
-
-        if (node.SW != null) {
-            inorderTraversal(node.SW, list);
-        }
-        if (node.SE != null) {
-            inorderTraversal(node.SE, list);
+    public void insert(double x, double y, int value) {
+        ensureCapacity(size + 1);
+        int node = size++;
+        xs[node] = x;
+        ys[node] = y;
+        values[node] = value;
+        Arrays.fill(children, 4 * node, 4 * node + 4, NONE);
+        if (node == 0) {
+            return;
+        }
+
+        int parent = 0;
+        while (true) {
+            int slot;
+            if (x < xs[parent]) {
+                slot = y < ys[parent] ? SW : NW;
+            } else {
+                slot = y < ys[parent] ? SE : NE;
+            }
+            int child = children[4 * parent + slot];
+            if (child == NONE) {
+                children[4 * parent + slot] = node;
+                return;
+            }
+            parent = child;
         }
-
-        return list;
     }
 
     /**
-     * Preorder traversal of the nodes
+     * Inorder traversal of the nodes: NW, NE, the node itself, SW, SE
      *
-     * @return ArrayList of the elements T in Preorder order
+     * @param out receives the elements in inorder order, at least size() long
+     * @return the number of elements written
      */
-    public ArrayList preorderTraversal() {
-        return preorderTraversal(root, new ArrayList<T>());
-    }
-
-    /**
-     * Helper method Preorder traversal - recursive call here
-     *
-     * @param p Point
-     * @param list data element
-     */
-    private ArrayList preorderTraversal(Node node, ArrayList<T> list) {
-        if (node != null && node.value != null) {
-            list.add(node.value);
-        }
-        if (node.NW != null) {
-            inorderTraversal(node.NW, list);
-        }
-        if (node.NE != null) {
-            inorderTraversal(node.NE, list);
-        }
-        if (node.SW != null) {
-            inorderTraversal(node.SW, list);
-        }
-        if (node.SE != null) {
-            inorderTraversal(node.SE, list);
+    public int inorderTraversal(int[] out) {
+        if (size == 0) {
+            return 0;
+        }
+        // entries >= 0 are nodes to expand, ~node marks a node to emit
+        int top = 0;
+        int written = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int entry = stack[--top];
+            if (entry < 0) {
+                out[written++] = values[~entry];
+                continue;
+            }
+            int base = 4 * entry;
+            // pushed in reverse of the visiting order
+            if (children[base + SE] != NONE) {
+                stack[top++] = children[base + SE];
+            }
+            if (children[base + SW] != NONE) {
+                stack[top++] = children[base + SW];
+            }
+            stack[top++] = ~entry;
+            if (children[base + NE] != NONE) {
+                stack[top++] = children[base + NE];
+            }
+            if (children[base + NW] != NONE) {
+                stack[top++] = children[base + NW];
+            }
         }
-        return list;
+        return written;
     }
 
     /**
-     * Postorder traversal of the nodes
-     *
-     * @return ArrayList of the elements T in postorder order
+     * @return the number of points in the tree
      */
-    public ArrayList postorderTraversal() {
-        return postorderTraversal(root, new ArrayList<T>());
+    public int size() {
+        return size;
     }
 
-    /**
-     * Helper method postorder traversal - recursive call here
-     *
-     * @param p Point
-     * @param list data element
-     */
-    private ArrayList postorderTraversal(Node node, ArrayList<T> list) {
-        if (node.NW != null) {
-            inorderTraversal(node.NW, list);
-        }
-        if (node.NE != null) {
-            inorderTraversal(node.NE, list);
-        }
-        if (node.SW != null) {
-            inorderTraversal(node.SW, list);
-        }
-        if (node.SE != null) {
-            inorderTraversal(node.SE, list);
-        }
-        if (node != null && node.value != null) {
-            list.add(node.value);
-        }
-        return list;
-    }
-
-    /**
-     * BFS traversal of the nodes
-     *
-     * @return ArrayList of the elements T in BFS order
-     */
-    public ArrayList bfsTraversal() {
-        //result list
-        ArrayList<T> list = new ArrayList<T>();
-        //BFS
-        Stack stack = new Stack();
-        stack.push(root);
-        while (!stack.empty()) {
-            Node node = (Node) stack.pop();
-            if (node != null && node.value != null) {
-                list.add(node.value);
-            }
-            if (node.NW != null) {
-                stack.push(node.NW);
-            }
-            if (node.NE != null) {
-                stack.push(node.NE);
-            }
-            if (node.SW != null) {
-                stack.push(node.SW);
-            }
-            if (node.SE != null) {
-                stack.push(node.SE);
-            }
-        }
-        return list;
+    private void ensureCapacity(int capacity) {
+        if (values.length >= capacity) {
+            return;
+        }
+        int grown = Math.max(capacity, values.length * 2);
+        xs = Arrays.copyOf(xs, grown);
+        ys = Arrays.copyOf(ys, grown);
+        values = Arrays.copyOf(values, grown);
+        children = Arrays.copyOf(children, 4 * grown);
+        // every expanded node adds at most four entries more than it removes
+        stack = new int[4 * grown + 1];
     }
 
 }
@@ -0,0 +1,117 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+import dbvis.motionrugs.data.FrameSummaries;
+import java.util.Arrays;
+
+/**
+ * Principal component ordering strategy. The movers of each frame are ordered
+ * by their projection onto the principal axis of the positions, i.e. the
+ * eigenvector of the largest eigenvalue of the 2x2 covariance matrix of the
+ * frame. Linear in the number of movers, a fast default for large swarms.
+ *
+ * An eigenvector has no inherent sign, so the axis of each frame is turned to
+ * point the same way as the axis of the frame before, otherwise the rug
+ * would flip upside down whenever the sign changes. The axis of a frame thus
+ * depends on all frames before it; it is derived from the covariances of the
+ * {@link FrameSummaries}. The axes are kept for the dataset of the last call
+ * and extended by the frames appended since, so a refresh only computes the
+ * axes of its new frames.
+ */
+public class PrincipalComponentStrategy implements FrameStrategy {
+
+    // axes of the first axisFrames frames of the dataset of the last call
+    private DatasetKey axesKey;
+    private double[] axisX = new double[0];
+    private double[] axisY = new double[0];
+    private int axisFrames;
+
+    @Override
+    public String getName() {
+        return "Principal component";
+    }
+
+    @Override
+    public FrameOrderer orderer(DataPoint[][] unsorted, int fromFrame) {
+        double[] axisX;
+        double[] axisY;
+        synchronized (this) {
+            extendAxes(unsorted);
+            // later calls only write beyond these frames or into new arrays
+            axisX = this.axisX;
+            axisY = this.axisY;
+        }
+
+        return (frame, perm) -> {
+            int n = frame.size();
+            int x = frame.getFrameIndex();
+            double[] xs = frame.xs();
+            double[] ys = frame.ys();
+            long[] keys = frame.keyScratch();
+            for (int y = 0; y < n; y++) {
+                keys[y] = sortableKey(xs[y] * axisX[x] + ys[y] * axisY[x]);
+                perm[y] = y;
+            }
+            frame.getSorter().radixSort(keys, perm, n);
+        };
+    }
+
+    /**
+     * Makes the axes cover all frames of the dataset, computing those of the
+     * appended frames, or of all frames for another dataset
+     */
+    private void extendAxes(DataPoint[][] unsorted) {
+        if (axesKey == null || unsorted.length < axisFrames || !axesKey.matches(unsorted)) {
+            axesKey = DatasetKey.of(unsorted);
+            axisFrames = 0;
+        }
+        if (axisFrames == unsorted.length) {
+            return;
+        }
+        if (axisX.length < unsorted.length) {
+            int capacity = Math.max(unsorted.length, 2 * axisX.length);
+            axisX = Arrays.copyOf(axisX, capacity);
+            axisY = Arrays.copyOf(axisY, capacity);
+        }
+        computeAxes(FrameSummaries.of(unsorted), axisFrames, unsorted.length, axisX, axisY);
+        axisFrames = unsorted.length;
+    }
+
+    /**
+     * Computes the sign-stabilized principal axis of a range of frames, the
+     * axes of the frames before it must be known
+     *
+     * @param summaries summaries of the dataset
+     * @param fromFrame first frame
+     * @param toFrame frame after the last frame
+     * @param axisX receives the x component of the unit axis of each frame
+     * @param axisY receives the y component of the unit axis of each frame
+     */
+    static void computeAxes(FrameSummaries summaries, int fromFrame, int toFrame, double[] axisX, double[] axisY) {
+        for (int x = fromFrame; x < toFrame; x++) {
+            // orientation of the major axis of [[sxx, sxy], [sxy, syy]]
+            double angle = 0.5 * Math.atan2(2 * summaries.getCovariance(x),
+                    summaries.getVarianceX(x) - summaries.getVarianceY(x));
+            double ux = Math.cos(angle);
+            double uy = Math.sin(angle);
+            if (Double.isNaN(angle)) {
+                // empty frame, keep the previous axis
+                ux = x > 0 ? axisX[x - 1] : 1.0;
+                uy = x > 0 ? axisY[x - 1] : 0.0;
+            } else if (x > 0 && ux * axisX[x - 1] + uy * axisY[x - 1] < 0) {
+                ux = -ux;
+                uy = -uy;
+            }
+            axisX[x] = ux;
+            axisY[x] = uy;
+        }
+    }
+
+    /**
+     * Maps a double to a long whose unsigned order is the order of the doubles
+     */
+    static long sortableKey(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    }
+}
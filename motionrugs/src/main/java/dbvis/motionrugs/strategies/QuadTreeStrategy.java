@@ -16,8 +16,6 @@
 package dbvis.motionrugs.strategies;
 
 import dbvis.motionrugs.data.DataPoint;
-import java.awt.Point;
-import java.util.ArrayList;
 
 /**
  * QuadTree parent strategy. Can be used for different implementation (e.g.
@@ -28,7 +26,7 @@ import java.util.ArrayList;
  * @author Juri Buchmüller, University of Konstanz
  * <buchmueller@dbvis.inf.uni-konstanz.de>
  */
-public class QuadTreeStrategy implements Strategy {
+public class QuadTreeStrategy implements FrameStrategy {
 
     @Override
     public String getName() {
@@ -36,27 +34,20 @@ public class QuadTreeStrategy implements Strategy {
     }
 
     @Override
-    public DataPoint[][] getOrderedValues(DataPoint[][] unsorted) {
-        DataPoint[][] result = new DataPoint[unsorted.length][unsorted[0].length];
-
-        for (int x = 0; x < unsorted.length; x++) {
-            // create the quadtree and insert the elements
-            PointQuadTree quadTree = new PointQuadTree();
-
-            for (int y = 0; y < unsorted[x].length; y++) {
-                quadTree.insert(new Point((int) unsorted[x][y].getX(), (int) unsorted[x][y].getY()), unsorted[x][y]);
+    public FrameOrderer orderer(DataPoint[][] unsorted, int fromFrame) {
+        // node storage is reused for every frame
+        PointQuadTree quadTree = new PointQuadTree();
+        return (frame, perm) -> {
+            // fill the quadtree with the elements
+            quadTree.reset();
+            double[] xs = frame.xs();
+            double[] ys = frame.ys();
+            for (int y = 0; y < frame.size(); y++) {
+                quadTree.insert(xs[y], ys[y], y);
             }
             //return the inorder traversal
-            ArrayList<DataPoint> list = quadTree.inorderTraversal();
-
-            //System.out.println(list.size());
-            for (int y = 0; y < list.size(); y++) {
-                if (list.get(y) != null) {
-                    result[x][y] = list.get(y);
-                }
-            }
-        }
-        return result;
+            quadTree.inorderTraversal(perm);
+        };
     }
 
 }
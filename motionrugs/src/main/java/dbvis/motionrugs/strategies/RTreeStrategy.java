@@ -15,19 +15,19 @@
  */
 package dbvis.motionrugs.strategies;
 
-import com.github.davidmoten.rtree.*;
-import com.github.davidmoten.rtree.geometry.Geometries;
-import com.github.davidmoten.rtree.geometry.Point;
 import dbvis.motionrugs.data.DataPoint;
-import java.util.List;
 
 /**
- * R-Tree ordering strategy taken from https://github.com/davidmoten/rtree
+ * R-Tree ordering strategy. The movers of each frame are bulk loaded into a
+ * Sort-Tile-Recursive packed R-tree ({@link PackedRTree}) and ordered by the
+ * depth first order of the leaves.
  * 
  * @author Eren Cakmak, University of Konstanz <cakmak@dbvis.inf.uni-konstanz.de>
  * @author Juri Buchmüller, University of Konstanz <buchmueller@dbvis.inf.uni-konstanz.de>
  */
-public class RTreeStrategy implements Strategy {
+public class RTreeStrategy implements FrameStrategy {
+
+    private static final int NODE_CAPACITY = 30;
 
     @Override
     public String getName() {
@@ -35,25 +35,13 @@ public class RTreeStrategy implements Strategy {
     }
 
     @Override
-    public DataPoint[][] getOrderedValues(DataPoint[][] unsorted) {
-        DataPoint[][] result = new DataPoint[unsorted.length][unsorted[0].length];
-
-        for (int x = 0; x < unsorted.length; x++) {
-            //create R*-tree
-            RTree<DataPoint, Point> tree = RTree.star().minChildren(15).maxChildren(30).create();
-
-            //add the points
-            for (int y = 0; y < unsorted[x].length; y++) {
-                tree = tree.add(unsorted[x][y], Geometries.point(unsorted[x][y].getX(), unsorted[x][y].getY()));
-            }
-            List<Entry<DataPoint, Point>> list = tree.entries().toList().toBlocking().single();
-
-            for (int y = 0; y < unsorted[x].length; y++) {
-                result[x][y] = list.get(y).value();
-            }
-        }
-
-        return result;
+    public FrameOrderer orderer(DataPoint[][] unsorted, int fromFrame) {
+        //tree and buffers are reused for all frames
+        PackedRTree tree = new PackedRTree(NODE_CAPACITY);
+        return (frame, perm) -> {
+            tree.build(frame.xs(), frame.ys(), frame.size());
+            tree.leafOrder(perm);
+        };
     }
 
 }
@@ -0,0 +1,132 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Inverse of an ordered dataset: the rank each mover was placed at in each
+ * frame. Movers are identified by their column in the unordered dataset,
+ * which is the mover id for datasets read by the CSVDataLoader. Ranks are
+ * kept in one flat int array, frame after frame, and are filled from the
+ * permutations while the frames are ordered.
+ *
+ * Recording distinct frames from several threads is safe once the capacity
+ * for all of them is ensured.
+ */
+public final class RankIndex {
+
+    public static final int NO_RANK = -1;
+
+    private int[] ranks = new int[0];
+    private int stride;
+    private int frameCount;
+
+    /**
+     * Makes room for the given frames without further allocation
+     *
+     * @param frames number of frames
+     * @param movers number of movers per frame
+     */
+    public synchronized void ensureCapacity(int frames, int movers) {
+        if (movers > stride) {
+            int[] grown = new int[Math.max(ranks.length / Math.max(1, stride), frames) * movers];
+            Arrays.fill(grown, NO_RANK);
+            for (int x = 0; x < frameCount; x++) {
+                System.arraycopy(ranks, x * stride, grown, x * movers, stride);
+            }
+            ranks = grown;
+            stride = movers;
+        } else if ((long) frames * stride > ranks.length) {
+            int capacity = Math.max(frames, 2 * ranks.length / stride);
+            int oldLength = ranks.length;
+            ranks = Arrays.copyOf(ranks, capacity * stride);
+            Arrays.fill(ranks, oldLength, ranks.length, NO_RANK);
+        }
+    }
+
+    /**
+     * Records the order of a frame
+     *
+     * @param frame index of the frame
+     * @param perm the columns of the movers in rank order
+     * @param n number of movers in the frame
+     */
+    public void record(int frame, int[] perm, int n) {
+        if (n > stride || (long) (frame + 1) * stride > ranks.length) {
+            ensureCapacity(frame + 1, n);
+        }
+        int offset = frame * stride;
+        for (int r = 0; r < n; r++) {
+            ranks[offset + perm[r]] = r;
+        }
+        Arrays.fill(ranks, offset + n, offset + stride, NO_RANK);
+        synchronized (this) {
+            frameCount = Math.max(frameCount, frame + 1);
+        }
+    }
+
+    /**
+     * Records the order of a frame from its ordered movers, for strategies
+     * that do not provide permutations
+     *
+     * @param frame index of the frame
+     * @param unsorted the movers of the frame in column order
+     * @param ordered the same movers in rank order
+     */
+    public void recordRow(int frame, DataPoint[] unsorted, DataPoint[] ordered) {
+        Map<DataPoint, Integer> columns = new IdentityHashMap<>();
+        for (int y = 0; y < unsorted.length; y++) {
+            columns.put(unsorted[y], y);
+        }
+        int[] perm = new int[ordered.length];
+        for (int r = 0; r < ordered.length; r++) {
+            perm[r] = columns.get(ordered[r]);
+        }
+        record(frame, perm, perm.length);
+    }
+
+    /**
+     * @param frame index of the frame
+     * @param mover column of the mover
+     * @return the rank of the mover in the frame, NO_RANK if unknown
+     */
+    public int getRank(int frame, int mover) {
+        if (frame >= frameCount || mover >= stride) {
+            return NO_RANK;
+        }
+        return ranks[frame * stride + mover];
+    }
+
+    /**
+     * Copies the ranks of one mover over a range of frames, e.g. to
+     * highlight its trajectory in a rug
+     *
+     * @param mover column of the mover
+     * @param fromFrame first frame
+     * @param toFrame frame after the last frame
+     * @param into receives the rank per frame, NO_RANK where unknown, at
+     * least toFrame - fromFrame long
+     */
+    public void getTrajectory(int mover, int fromFrame, int toFrame, int[] into) {
+        for (int x = fromFrame; x < toFrame; x++) {
+            into[x - fromFrame] = getRank(x, mover);
+        }
+    }
+
+    /**
+     * @return the number of frames recorded so far
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Drops all recorded frames, the capacity is kept
+     */
+    public synchronized void clear() {
+        Arrays.fill(ranks, 0, frameCount * stride, NO_RANK);
+        frameCount = 0;
+    }
+}
@@ -0,0 +1,284 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Ordering mode that reduces the rank jumps of movers between consecutive
+ * frames for any base strategy. A window slides over the order of the base
+ * strategy and the movers inside it are placed in the order they had in the
+ * previous frame, so a mover stays within window ranks of its base rank. This
+ * absorbs the shift of all movers between the old and new rank of a mover
+ * that jumps, as well as swaps of neighbours. O(n log window) per frame on top
+ * of the base strategy.
+ *
+ * The spatial quality of an order is measured by its path length, the sum of
+ * the distances between movers of neighbouring ranks. Where the reordering
+ * makes the path longer than the base order by more than the tolerance, it
+ * is redone locally with a smaller window, down to the base order itself.
+ */
+public class StableOrderingStrategy implements FrameStrategy {
+
+    public static final double DEFAULT_TOLERANCE = 0.1;
+    public static final int DEFAULT_WINDOW = 64;
+
+    private final Strategy base;
+    private double tolerance = DEFAULT_TOLERANCE;
+    private int window = DEFAULT_WINDOW;
+
+    // order of the last frame of the previous call and its dataset, to resume
+    // an appended range
+    private int[] resumePerm;
+    private int resumeFrame = -1;
+    private DatasetKey resumeKey;
+
+    /**
+     * @param base the strategy providing the spatial order
+     */
+    public StableOrderingStrategy(Strategy base) {
+        this.base = base;
+    }
+
+    @Override
+    public int firstChangedFrame(DataPoint[][] data, int orderedFrames) {
+        return base.firstChangedFrame(data, orderedFrames);
+    }
+
+    @Override
+    public String getName() {
+        return base.getName() + " (stable)";
+    }
+
+    @Override
+    public FrameOrderer orderer(DataPoint[][] data, int fromFrame) {
+        DatasetKey key = DatasetKey.of(data);
+        int[] start;
+        synchronized (this) {
+            start = fromFrame == resumeFrame && resumeKey.matches(data) ? resumePerm : null;
+        }
+        FrameOrderer baseOrderer;
+        if (start == null && fromFrame > 0) {
+            // no history, the frame before the pass keeps the base order
+            baseOrderer = baseOrderer(data, fromFrame - 1);
+            FrameContext previous = new FrameContext(data);
+            previous.load(fromFrame - 1);
+            start = new int[previous.size()];
+            baseOrderer.order(previous, start);
+        } else {
+            baseOrderer = baseOrderer(data, fromFrame);
+        }
+        return new StableOrderer(baseOrderer, start, fromFrame, key, Math.max(0.0, tolerance), Math.max(1, window));
+    }
+
+    /**
+     * Orders the frames of one pass, keeps the order of the previous frame
+     */
+    private final class StableOrderer implements FrameOrderer {
+
+        private final FrameOrderer baseOrderer;
+        private final DatasetKey key;
+        private final double tolerance;
+        private final int window;
+        private int[] previousPerm;
+        private int frameIndex;
+        private int[] basePerm = new int[0];
+        private int[] candidate = new int[0];
+        private int[] previousRank = new int[0];
+        private int[] baseRank = new int[0];
+        private boolean[] placed = new boolean[0];
+        private int[] heap = new int[0];
+        private int heapSize;
+
+        StableOrderer(FrameOrderer baseOrderer, int[] previousPerm, int frameIndex, DatasetKey key, double tolerance, int window) {
+            this.baseOrderer = baseOrderer;
+            this.key = key;
+            this.previousPerm = previousPerm;
+            this.frameIndex = frameIndex;
+            this.tolerance = tolerance;
+            this.window = window;
+        }
+
+        @Override
+        public void order(FrameContext frame, int[] perm) {
+            int n = frame.size();
+            if (basePerm.length < n) {
+                basePerm = new int[n];
+                candidate = new int[n];
+                previousRank = new int[n];
+                baseRank = new int[n];
+                placed = new boolean[n];
+                heap = new int[n];
+            }
+            baseOrderer.order(frame, basePerm);
+
+            // a new array per frame, the last one is kept to resume the next pass
+            int[] current = new int[n];
+            if (previousPerm == null || previousPerm.length != n) {
+                System.arraycopy(basePerm, 0, current, 0, n);
+            } else {
+                stabilize(frame, n, current);
+            }
+            System.arraycopy(current, 0, perm, 0, n);
+
+            previousPerm = current;
+            frameIndex++;
+            synchronized (StableOrderingStrategy.this) {
+                resumePerm = current;
+                resumeFrame = frameIndex;
+                resumeKey = key;
+            }
+        }
+
+        private void stabilize(FrameContext frame, int n, int[] current) {
+            for (int r = 0; r < n; r++) {
+                previousRank[previousPerm[r]] = r;
+                baseRank[basePerm[r]] = r;
+            }
+            stabilizeRange(frame, 0, n, window, current);
+        }
+
+        /**
+         * Reorders the base ranks from to to with the given window. The
+         * result splits into segments that hold the same movers as the base
+         * order at the same ranks; a segment is taken if its path length,
+         * including the step from the rank before, is within the tolerance of
+         * the base order, else it is reordered again with half the window.
+         */
+        private void stabilizeRange(FrameContext frame, int from, int to, int w, int[] current) {
+            if (w == 0) {
+                System.arraycopy(basePerm, from, current, from, to - from);
+                return;
+            }
+            schedule(from, to, w);
+            double[] xs = frame.xs();
+            double[] ys = frame.ys();
+            int start = from;
+            int maxBaseRank = -1;
+            for (int r = from; r < to; r++) {
+                maxBaseRank = Math.max(maxBaseRank, baseRank[candidate[r]]);
+                if (maxBaseRank != r) {
+                    continue;
+                }
+                double baseLength = start > 0 ? distance(xs, ys, basePerm[start - 1], basePerm[start]) : 0.0;
+                double candidateLength = start > 0 ? distance(xs, ys, current[start - 1], candidate[start]) : 0.0;
+                for (int i = start + 1; i <= r; i++) {
+                    baseLength += distance(xs, ys, basePerm[i - 1], basePerm[i]);
+                    candidateLength += distance(xs, ys, candidate[i - 1], candidate[i]);
+                }
+                if (candidateLength <= (1.0 + tolerance) * baseLength) {
+                    System.arraycopy(candidate, start, current, start, r + 1 - start);
+                } else {
+                    stabilizeRange(frame, start, r + 1, w / 2, current);
+                }
+                start = r + 1;
+            }
+        }
+
+        /**
+         * Picks the movers rank by rank, always the one that came first in
+         * the previous frame among the movers whose base rank is at most w
+         * ranks ahead. A mover whose base rank is w ranks behind is placed at
+         * once, so no mover moves more than w ranks away from its base rank.
+         */
+        private void schedule(int from, int to, int w) {
+            for (int r = from; r < to; r++) {
+                placed[basePerm[r]] = false;
+            }
+            heapSize = 0;
+            int next = from;
+            for (int r = from; r < to; r++) {
+                while (next < to && next <= r + w) {
+                    push(previousRank[basePerm[next++]]);
+                }
+                int mover = r - w >= from ? basePerm[r - w] : -1;
+                if (mover < 0 || placed[mover]) {
+                    // placed movers are left in the heap and skipped here
+                    do {
+                        mover = previousPerm[pop()];
+                    } while (placed[mover]);
+                }
+                placed[mover] = true;
+                candidate[r] = mover;
+            }
+        }
+
+        private void push(int value) {
+            int i = heapSize++;
+            while (i > 0 && heap[(i - 1) / 2] > value) {
+                heap[i] = heap[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            heap[i] = value;
+        }
+
+        private int pop() {
+            int top = heap[0];
+            int value = heap[--heapSize];
+            int i = 0;
+            int child;
+            while ((child = 2 * i + 1) < heapSize) {
+                if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= value) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = value;
+            return top;
+        }
+    }
+
+    private static double distance(double[] xs, double[] ys, int a, int b) {
+        double dx = xs[a] - xs[b];
+        double dy = ys[a] - ys[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Returns the orderer of the base strategy, strategies that only order
+     * whole rows are run frame by frame
+     */
+    private FrameOrderer baseOrderer(DataPoint[][] data, int fromFrame) {
+        if (base instanceof FrameStrategy) {
+            return ((FrameStrategy) base).orderer(data, fromFrame);
+        }
+        DataPoint[][] rows = new DataPoint[data.length][];
+        Map<DataPoint, Integer> index = new IdentityHashMap<>();
+        return (frame, perm) -> {
+            int x = frame.getFrameIndex();
+            base.orderFrames(data, x, x + 1, rows);
+            DataPoint[] unsorted = frame.getFrame();
+            index.clear();
+            for (int y = 0; y < unsorted.length; y++) {
+                index.put(unsorted[y], y);
+            }
+            for (int r = 0; r < unsorted.length; r++) {
+                perm[r] = index.get(rows[x][r]);
+            }
+            rows[x] = null;
+        };
+    }
+
+    /**
+     * Sets how much longer than the base order the path through the movers of
+     * a window may get
+     *
+     * @param tolerance relative increase of the path length, e.g. 0.1 for 10%
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Sets how many ranks a mover may be placed away from its base rank
+     *
+     * @param window maximum rank distance, at least 1
+     */
+    public void setWindow(int window) {
+        this.window = window;
+    }
+}
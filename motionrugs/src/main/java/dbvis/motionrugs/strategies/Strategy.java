@@ -19,6 +19,8 @@ import dbvis.motionrugs.data.DataPoint;
 
 /**
  * The Strategy interface. Strategies must provide a method to order arrays of DataPoints.
+ * Ordering works on ranges of frames, so that a growing dataset only needs its newly
+ * appended frames ordered (see {@link IncrementalOrdering}).
  *
  * @author Juri Buchmüller, University of Konstanz
  * <buchmueller@dbvis.inf.uni-konstanz.de>
@@ -32,6 +34,62 @@ public interface Strategy {
      */
     public String getName();
 
-    public DataPoint[][] getOrderedValues(DataPoint[][] unsorted);
+    /**
+     * Orders the complete dataset.
+     *
+     * @param unsorted dataset, first dimension frames, second the movers
+     * @return the ordered dataset
+     */
+    public default DataPoint[][] getOrderedValues(DataPoint[][] unsorted) {
+        DataPoint[][] result = new DataPoint[unsorted.length][];
+        orderFrames(unsorted, 0, unsorted.length, result);
+        return result;
+    }
+
+    /**
+     * Orders the frames fromFrame (inclusive) to toFrame (exclusive) of the
+     * dataset and stores each ordered frame in the same slot of into. Slots
+     * outside of the range are left untouched.
+     *
+     * @param data dataset, first dimension frames, second the movers
+     * @param fromFrame first frame to order
+     * @param toFrame frame after the last frame to order
+     * @param into target array, at least toFrame long
+     */
+    public void orderFrames(DataPoint[][] data, int fromFrame, int toFrame, DataPoint[][] into);
+
+    /**
+     * Orders the frames fromFrame (inclusive) to toFrame (exclusive) like
+     * {@link #orderFrames(DataPoint[][], int, int, DataPoint[][])} and
+     * records the rank of every mover in ranks.
+     *
+     * @param data dataset, first dimension frames, second the movers
+     * @param fromFrame first frame to order
+     * @param toFrame frame after the last frame to order
+     * @param into target array, at least toFrame long
+     * @param ranks receives the ranks of the ordered frames
+     */
+    public default void orderFrames(DataPoint[][] data, int fromFrame, int toFrame, DataPoint[][] into, RankIndex ranks) {
+        orderFrames(data, fromFrame, toFrame, into);
+        for (int x = fromFrame; x < toFrame; x++) {
+            ranks.recordRow(x, data[x], into[x]);
+        }
+    }
+
+    /**
+     * Returns the first frame whose order changes when frames are appended
+     * to the dataset, e.g. because the order depends on a grid over all
+     * frames that grows with them. The frames before it keep the order they
+     * had before the frames were appended.
+     *
+     * @param data dataset, the frames ordered before followed by the
+     * appended ones
+     * @param orderedFrames number of frames ordered before
+     * @return the first frame to order again, orderedFrames if only the
+     * appended frames need ordering
+     */
+    public default int firstChangedFrame(DataPoint[][] data, int orderedFrames) {
+        return orderedFrames;
+    }
 
 }
@@ -0,0 +1,51 @@
+package dbvis.motionrugs.strategies;
+
+/**
+ * What a strategy declares about itself, so that the {@link OrderingEngine}
+ * can decide how to run it.
+ */
+public final class StrategyCapabilities {
+
+    /**
+     * Expected cost of ordering one frame of n movers
+     */
+    public enum Complexity {
+        LINEAR, LINEARITHMIC, QUADRATIC
+    }
+
+    private final boolean parallelSafe;
+    private final boolean incremental;
+    private final boolean stateful;
+    private final Complexity complexity;
+
+    /**
+     * @param parallelSafe disjoint ranges of frames may be ordered
+     * concurrently and give the same frames as one pass
+     * @param incremental appended frames may be ordered without ordering the
+     * history again
+     * @param stateful the order of a frame depends on the frames before it
+     * @param complexity expected cost per frame
+     */
+    public StrategyCapabilities(boolean parallelSafe, boolean incremental, boolean stateful, Complexity complexity) {
+        this.parallelSafe = parallelSafe;
+        this.incremental = incremental;
+        this.stateful = stateful;
+        this.complexity = complexity;
+    }
+
+    public boolean isParallelSafe() {
+        return parallelSafe;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public boolean isStateful() {
+        return stateful;
+    }
+
+    public Complexity getComplexity() {
+        return complexity;
+    }
+}
@@ -0,0 +1,28 @@
+package dbvis.motionrugs.strategies;
+
+/**
+ * Service interface for strategies, found by the {@link StrategyRegistry}
+ * with a {@link java.util.ServiceLoader}. A jar adds strategies by listing its
+ * providers in META-INF/services/dbvis.motionrugs.strategies.StrategyProvider;
+ * providers need a public no-argument constructor.
+ */
+public interface StrategyProvider {
+
+    /**
+     * @return the name of the strategies created, unique in the registry
+     */
+    public String getName();
+
+    /**
+     * @return what the strategies created declare about themselves
+     */
+    public StrategyCapabilities getCapabilities();
+
+    /**
+     * Creates a configured strategy. Every call returns a new instance, so
+     * state kept by the strategy is not shared between orderings.
+     *
+     * @return the strategy
+     */
+    public Strategy createStrategy();
+}
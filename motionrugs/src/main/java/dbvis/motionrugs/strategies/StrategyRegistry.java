@@ -0,0 +1,95 @@
+package dbvis.motionrugs.strategies;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The strategies available to the application, by name, in the order they
+ * were found. Providers are loaded with a {@link ServiceLoader}, so strategies
+ * in other jars on the class path are picked up as well.
+ */
+public final class StrategyRegistry {
+
+    private final Map<String, StrategyProvider> providers = new LinkedHashMap<>();
+
+    /**
+     * Loads all providers visible to the class loader of this class
+     *
+     * @return the registry
+     */
+    public static StrategyRegistry load() {
+        return load(StrategyRegistry.class.getClassLoader());
+    }
+
+    /**
+     * Loads all providers visible to the given class loader. Providers that
+     * fail to load are skipped.
+     *
+     * @param loader class loader to search
+     * @return the registry
+     */
+    public static StrategyRegistry load(ClassLoader loader) {
+        StrategyRegistry registry = new StrategyRegistry();
+        Iterator<StrategyProvider> found = ServiceLoader.load(StrategyProvider.class, loader).iterator();
+        while (true) {
+            try {
+                if (!found.hasNext()) {
+                    break;
+                }
+                registry.register(found.next());
+            } catch (ServiceConfigurationError ex) {
+                Logger.getLogger(StrategyRegistry.class.getName()).log(Level.WARNING, null, ex);
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Adds a provider. A provider with the name of an already registered one
+     * is ignored.
+     *
+     * @param provider the provider
+     * @return true if the provider was added
+     */
+    public boolean register(StrategyProvider provider) {
+        if (providers.containsKey(provider.getName())) {
+            Logger.getLogger(StrategyRegistry.class.getName()).log(Level.WARNING,
+                    "Strategy {0} is already registered, ignoring {1}",
+                    new Object[]{provider.getName(), provider.getClass().getName()});
+            return false;
+        }
+        providers.put(provider.getName(), provider);
+        return true;
+    }
+
+    /**
+     * @return the names of the strategies in registration order
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(new ArrayList<>(providers.keySet()));
+    }
+
+    /**
+     * @param name name of a strategy
+     * @return its provider, null if there is none
+     */
+    public StrategyProvider getProvider(String name) {
+        return providers.get(name);
+    }
+
+    /**
+     * @return all providers in registration order
+     */
+    public Collection<StrategyProvider> getProviders() {
+        return Collections.unmodifiableCollection(providers.values());
+    }
+}
@@ -0,0 +1,122 @@
+package dbvis.motionrugs.strategies;
+
+import dbvis.motionrugs.data.DataPoint;
+
+/**
+ * Ordering mode for keyed strategies that exploits the similarity of
+ * consecutive frames. Every frame starts from the order of the previous frame,
+ * which is usually almost sorted by the new keys, and is repaired by merging
+ * its ascending runs. Only if the seeded order has too many runs is the frame
+ * sorted from scratch.
+ *
+ * Movers with equal keys keep their previous relative order, which also makes
+ * the rug visually more stable than sorting every frame from scratch.
+ */
+public class TemporalCoherenceStrategy implements FrameStrategy {
+
+    public static final double DEFAULT_DISORDER_THRESHOLD = 0.25;
+
+    private final KeyedStrategy base;
+    private final double disorderThreshold;
+
+    // order of the last frame of the previous call and its dataset, to resume
+    // an appended range
+    private int[] resumePerm;
+    private int resumeFrame = -1;
+    private DatasetKey resumeKey;
+
+    /**
+     * @param base the strategy providing the keys
+     */
+    public TemporalCoherenceStrategy(KeyedStrategy base) {
+        this(base, DEFAULT_DISORDER_THRESHOLD);
+    }
+
+    /**
+     * @param base the strategy providing the keys
+     * @param disorderThreshold runs per mover above which a frame is sorted
+     * from scratch instead of repaired, between 0 and 1
+     */
+    public TemporalCoherenceStrategy(KeyedStrategy base, double disorderThreshold) {
+        this.base = base;
+        this.disorderThreshold = disorderThreshold;
+    }
+
+    @Override
+    public int firstChangedFrame(DataPoint[][] data, int orderedFrames) {
+        return base.firstChangedFrame(data, orderedFrames);
+    }
+
+    @Override
+    public String getName() {
+        return base.getName() + " (coherent)";
+    }
+
+    @Override
+    public FrameOrderer orderer(DataPoint[][] data, int fromFrame) {
+        KeyedStrategy.KeyFunction keyFunction = base.keyFunction(data);
+        DatasetKey key = DatasetKey.of(data);
+
+        // order of the frame before the pass, from the last pass or sorted from scratch
+        int[] start;
+        synchronized (this) {
+            start = fromFrame == resumeFrame && resumeKey.matches(data) ? resumePerm : null;
+        }
+        if (start == null && fromFrame > 0) {
+            FrameContext previous = new FrameContext(data);
+            previous.load(fromFrame - 1);
+            int n = previous.size();
+            start = identity(n);
+            long[] keys = new long[n];
+            keyFunction.computeKeys(previous, keys);
+            previous.getSorter().radixSort(keys, start, n);
+        }
+        int[] initial = start;
+
+        return new FrameOrderer() {
+            private int[] previousPerm = initial;
+            private long[] keys = new long[0];
+            private int frameIndex = fromFrame;
+
+            @Override
+            public void order(FrameContext frame, int[] perm) {
+                int n = frame.size();
+                long[] moverKeys = frame.keyScratch();
+                keyFunction.computeKeys(frame, moverKeys);
+
+                // the new keys in the order of the previous frame
+                int[] seed = previousPerm != null && previousPerm.length == n ? previousPerm : identity(n);
+                if (keys.length < n) {
+                    keys = new long[n];
+                }
+                for (int y = 0; y < n; y++) {
+                    keys[y] = moverKeys[seed[y]];
+                }
+                // a new array per frame, the last one is kept to resume the next pass
+                int[] current = seed.clone();
+                if (KeySort.countRuns(keys, n) <= Math.max(1, disorderThreshold * n)) {
+                    frame.getSorter().mergeRuns(keys, current, n);
+                } else {
+                    frame.getSorter().radixSort(keys, current, n);
+                }
+                System.arraycopy(current, 0, perm, 0, n);
+
+                previousPerm = current;
+                frameIndex++;
+                synchronized (TemporalCoherenceStrategy.this) {
+                    resumePerm = current;
+                    resumeFrame = frameIndex;
+                    resumeKey = key;
+                }
+            }
+        };
+    }
+
+    private static int[] identity(int n) {
+        int[] perm = new int[n];
+        for (int y = 0; y < n; y++) {
+            perm[y] = y;
+        }
+        return perm;
+    }
+}
@@ -0,0 +1,114 @@
+package dbvis.motionrugs.strategies;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the throughput of the table-driven {@link HilbertKeys} encoder with
+ * the bitwise encoder of {@link HilbertCurveStrategy}, and of the preferred
+ * {@link KeyKernel} with the scalar kernel after checking that both return
+ * the same keys. Not a unit test, run with
+ * <pre>
+ * mvn test-compile
+ * java --add-modules jdk.incubator.vector -cp target/classes:target/test-classes dbvis.motionrugs.strategies.HilbertKeysBenchmark
+ * </pre>
+ * Without --add-modules both kernels are the scalar one.
+ */
+public class HilbertKeysBenchmark {
+
+    private static final int KEYS = 1 << 20;
+    private static final int ROUNDS = 10;
+
+    @SuppressWarnings("deprecation")
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        // 15 bits per axis is the largest grid the old encoder handles
+        int[] xs = new int[KEYS];
+        int[] ys = new int[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            xs[i] = random.nextInt(1 << 15);
+            ys[i] = random.nextInt(1 << 15);
+        }
+        HilbertCurveStrategy legacy = new HilbertCurveStrategy();
+
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < KEYS; i++) {
+                sink += legacy.encode(xs[i], ys[i], 15);
+            }
+            long legacyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < KEYS; i++) {
+                sink += HilbertKeys.encode(xs[i], ys[i], 15);
+            }
+            long tableNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < KEYS; i++) {
+                sink += HilbertKeys.encode((long) xs[i] << 17, (long) ys[i] << 17, 32);
+            }
+            long table32Nanos = System.nanoTime() - start;
+
+            System.out.printf("round %d: legacy %.1f Mkeys/s, table %.1f Mkeys/s, table 32 bit %.1f Mkeys/s%n",
+                    round, KEYS * 1e3 / legacyNanos, KEYS * 1e3 / tableNanos, KEYS * 1e3 / table32Nanos);
+        }
+        System.out.println("(" + sink + ")");
+
+        benchmarkKernels(random);
+    }
+
+    private static void benchmarkKernels(Random random) {
+        KeyKernel scalar = KeyKernels.scalar();
+        KeyKernel preferred = KeyKernels.preferred();
+        // points partly outside the grid and a tail that does not fill a vector
+        int n = KEYS - 3;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = random.nextDouble() * 120 - 10;
+            ys[i] = random.nextDouble() * 80 - 5;
+        }
+        xs[0] = Double.NaN;
+        long[] expected = new long[n];
+        long[] actual = new long[n];
+
+        for (int bits = 1; bits <= GridQuantizer.MAX_BITS; bits++) {
+            GridQuantizer quantizer = new GridQuantizer(0, 0, 100, 70, bits);
+            scalar.hilbertKeys(xs, ys, n, quantizer, expected);
+            preferred.hilbertKeys(xs, ys, n, quantizer, actual);
+            if (!Arrays.equals(expected, actual)) {
+                throw new IllegalStateException("Hilbert keys of " + preferred.getName() + " differ at " + bits + " bits");
+            }
+            scalar.mortonKeys(xs, ys, n, quantizer, expected);
+            preferred.mortonKeys(xs, ys, n, quantizer, actual);
+            if (!Arrays.equals(expected, actual)) {
+                throw new IllegalStateException("Morton keys of " + preferred.getName() + " differ at " + bits + " bits");
+            }
+        }
+
+        GridQuantizer quantizer = new GridQuantizer(0, 0, 100, 70, GridQuantizer.MAX_BITS);
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            scalar.hilbertKeys(xs, ys, n, quantizer, expected);
+            long scalarHilbertNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            preferred.hilbertKeys(xs, ys, n, quantizer, actual);
+            long hilbertNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            scalar.mortonKeys(xs, ys, n, quantizer, expected);
+            long scalarMortonNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            preferred.mortonKeys(xs, ys, n, quantizer, actual);
+            long mortonNanos = System.nanoTime() - start;
+
+            System.out.printf("round %d: hilbert scalar %.1f, %s %.1f Mkeys/s; morton scalar %.1f, %s %.1f Mkeys/s%n",
+                    round, n * 1e3 / scalarHilbertNanos, preferred.getName(), n * 1e3 / hilbertNanos,
+                    n * 1e3 / scalarMortonNanos, preferred.getName(), n * 1e3 / mortonNanos);
+        }
+    }
+}
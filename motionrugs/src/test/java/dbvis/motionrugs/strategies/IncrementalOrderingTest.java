@@ -0,0 +1,106 @@
+package dbvis.motionrugs.strategies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import dbvis.motionrugs.data.DataPoint;
+import dbvis.motionrugs.data.FrameSummaries;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a growing dataset ordered update by update, as in a live
+ * session, gets the order of the complete dataset ordered at once, and that
+ * the recorded ranks are those of the ordered frames.
+ */
+public class IncrementalOrderingTest {
+
+    private static final int FRAMES = 300;
+    private static final int MOVERS = 60;
+
+    private final OrderingEngine engine = new OrderingEngine(StrategyRegistry.load());
+
+    @Test
+    public void swarmLeavingItsSpawnPoint() {
+        assertIncrementalEqualsFull(swarm(true));
+    }
+
+    @Test
+    public void driftingSwarm() {
+        assertIncrementalEqualsFull(swarm(false));
+    }
+
+    /**
+     * Movers starting from one point or spread over an area, drifting away
+     * so that the bounding box grows over time
+     */
+    private static DataPoint[][] swarm(boolean spawnPoint) {
+        Random random = new Random(11);
+        double[] x = new double[MOVERS];
+        double[] y = new double[MOVERS];
+        double[] vx = new double[MOVERS];
+        double[] vy = new double[MOVERS];
+        for (int i = 0; i < MOVERS; i++) {
+            x[i] = spawnPoint ? 10.0 : random.nextDouble() * 20;
+            y[i] = spawnPoint ? -5.0 : random.nextDouble() * 20 - 10;
+            vx[i] = random.nextGaussian();
+            vy[i] = random.nextGaussian();
+        }
+        DataPoint[][] data = new DataPoint[FRAMES][MOVERS];
+        for (int f = 0; f < FRAMES; f++) {
+            for (int i = 0; i < MOVERS; i++) {
+                data[f][i] = new DataPoint(x[i], y[i], i);
+                x[i] += vx[i] + 0.3 * random.nextGaussian() + Math.sin(f / 40.0);
+                y[i] += vy[i] + 0.3 * random.nextGaussian();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Reloads the first frames into new arrays and points, like the live
+     * session reading the CSV file again
+     */
+    private static DataPoint[][] reload(DataPoint[][] data, int frames, FrameSummaries[] summaries) {
+        DataPoint[][] copy = new DataPoint[frames][];
+        for (int f = 0; f < frames; f++) {
+            copy[f] = new DataPoint[data[f].length];
+            for (int i = 0; i < data[f].length; i++) {
+                copy[f][i] = new DataPoint(data[f][i].getX(), data[f][i].getY(), data[f][i].getId());
+            }
+        }
+        summaries[0] = FrameSummaries.register(copy, summaries[0]);
+        return copy;
+    }
+
+    private void assertIncrementalEqualsFull(DataPoint[][] data) {
+        for (StrategyProvider provider : engine.getRegistry().getProviders()) {
+            if (!provider.getCapabilities().isIncremental()) {
+                continue;
+            }
+            String name = provider.getName();
+            RankIndex fullRanks = new RankIndex();
+            DataPoint[][] full = engine.order(name, data, fullRanks);
+
+            IncrementalOrdering incremental = engine.incremental(name);
+            incremental.setRecordingRanks(true);
+            FrameSummaries[] summaries = new FrameSummaries[1];
+            DataPoint[][] ordered = null;
+            // a single frame first, then ticks of varying length
+            for (int frames = 1, tick = 1; frames <= FRAMES; frames += tick, tick = tick % 37 + 7) {
+                ordered = incremental.update(reload(data, frames, summaries));
+            }
+            ordered = incremental.update(reload(data, FRAMES, summaries));
+
+            for (int f = 0; f < FRAMES; f++) {
+                for (int r = 0; r < MOVERS; r++) {
+                    assertEquals(full[f][r].getId(), ordered[f][r].getId(),
+                            name + ": mover at rank " + r + " of frame " + f);
+                    assertEquals(r, fullRanks.getRank(f, full[f][r].getId()),
+                            name + ": rank of mover " + full[f][r].getId() + " in frame " + f);
+                    assertEquals(r, incremental.getRankIndex().getRank(f, ordered[f][r].getId()),
+                            name + ": recorded rank of mover " + ordered[f][r].getId() + " in frame " + f);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package dbvis.motionrugs.strategies;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the SIMD key kernel returns the keys of the scalar kernel.
+ * Skipped where the kernel is not built or the Vector API is not available.
+ */
+public class VectorKeyKernelTest {
+
+    // not a multiple of any vector length, so the scalar tail is covered too
+    private static final int POINTS = 4099;
+
+    private static KeyKernel vector;
+
+    @BeforeAll
+    public static void loadKernel() {
+        try {
+            vector = (KeyKernel) Class.forName("dbvis.motionrugs.strategies.VectorKeyKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            vector = null;
+        }
+    }
+
+    @Test
+    public void keysInsideTheBox() {
+        double[][] points = points(new Random(1), 0, 0, 100, 70);
+        assertSameKeys(points[0], points[1], 0, 0, 100, 70);
+    }
+
+    @Test
+    public void negativeCoordinates() {
+        double[][] points = points(new Random(2), -250, -80, -20, 40);
+        assertSameKeys(points[0], points[1], -250, -80, -20, 40);
+    }
+
+    @Test
+    public void pointsOutsideTheBox() {
+        // the box covers a part of the points only, the others are clamped
+        double[][] points = points(new Random(3), -50, -50, 150, 150);
+        points[0][0] = Double.NaN;
+        points[1][1] = Double.NaN;
+        points[0][2] = Double.POSITIVE_INFINITY;
+        points[1][3] = Double.NEGATIVE_INFINITY;
+        points[0][4] = 1e300;
+        assertSameKeys(points[0], points[1], 0, 0, 100, 70);
+    }
+
+    @Test
+    public void emptyBox() {
+        double[][] points = points(new Random(4), -10, -10, 10, 10);
+        assertSameKeys(points[0], points[1], 5, 5, 5, 5);
+    }
+
+    private static double[][] points(Random random, double minX, double minY, double maxX, double maxY) {
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = minX + random.nextDouble() * (maxX - minX);
+            ys[i] = minY + random.nextDouble() * (maxY - minY);
+        }
+        return new double[][]{xs, ys};
+    }
+
+    /**
+     * Compares the Hilbert and z-order keys of both kernels for every grid
+     * size on the given box
+     */
+    private static void assertSameKeys(double[] xs, double[] ys, double minX, double minY, double maxX, double maxY) {
+        assumeTrue(vector != null, "Vector API kernel not available");
+        KeyKernel scalar = KeyKernels.scalar();
+        long[] expected = new long[POINTS];
+        long[] actual = new long[POINTS];
+        for (int bits = 1; bits <= GridQuantizer.MAX_BITS; bits++) {
+            GridQuantizer quantizer = new GridQuantizer(minX, minY, maxX, maxY, bits);
+            scalar.hilbertKeys(xs, ys, POINTS, quantizer, expected);
+            vector.hilbertKeys(xs, ys, POINTS, quantizer, actual);
+            assertArrayEquals(expected, actual, "Hilbert keys at " + bits + " bits");
+            scalar.mortonKeys(xs, ys, POINTS, quantizer, expected);
+            vector.mortonKeys(xs, ys, POINTS, quantizer, actual);
+            assertArrayEquals(expected, actual, "Morton keys at " + bits + " bits");
+        }
+    }
+}